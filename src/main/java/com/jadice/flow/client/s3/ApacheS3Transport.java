@@ -0,0 +1,128 @@
+package com.jadice.flow.client.s3;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * {@link S3Transport} backed by the AWS SDK v1 client and its blocking Apache HttpClient stack. Every in-flight
+ * request occupies the calling thread.
+ */
+public class ApacheS3Transport implements S3Transport {
+
+    /**
+     * The aws s3 client instance.
+     */
+    private final AmazonS3 awsS3Client;
+
+    public ApacheS3Transport(final AmazonS3 awsS3Client) {
+        this.awsS3Client = awsS3Client;
+    }
+
+    @Override
+    public void putObject(final String bucket, final String key, final InputStream stream, final ObjectMetadata metadata) {
+        awsS3Client.putObject(createPutObjectRequest(bucket, key, stream, metadata));
+    }
+
+    @Override
+    public boolean putObjectIfMatch(final String bucket, final String key, final InputStream stream,
+        final ObjectMetadata metadata, final String eTag) {
+        final PutObjectRequest request = createPutObjectRequest(bucket, key, stream, metadata);
+        // the v1 client strips the quotes from the ETags it returns, but the header expects a quoted entity tag
+        request.putCustomRequestHeader(Headers.GET_OBJECT_IF_MATCH, eTag.startsWith("\"") ? eTag : "\"" + eTag + "\"");
+        try {
+            awsS3Client.putObject(request);
+            return true;
+        } catch (AmazonS3Exception e) {
+            // 412 if the ETag differs, 404 if the object was deleted in the meantime
+            if (e.getStatusCode() == 412 || e.getStatusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static PutObjectRequest createPutObjectRequest(final String bucket, final String key,
+        final InputStream stream, final ObjectMetadata metadata) {
+        final PutObjectRequest request = new PutObjectRequest( //
+            bucket, //
+            key, //
+            stream, //
+            metadata //
+        );
+        // we don't care about any kind of stupid read limit, as our streams are actually seekable. Take that, crappy InputStream hierarchy!
+        request.getRequestClientOptions().setReadLimit(Integer.MAX_VALUE);
+        return request;
+    }
+
+    @Override
+    public List<String> listObjects(final String bucket, final String prefix) {
+        final List<String> keys = new ArrayList<>();
+        final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix);
+        ListObjectsV2Result result;
+        do {
+            result = awsS3Client.listObjectsV2(request);
+            for (final S3ObjectSummary summary : result.getObjectSummaries()) {
+                keys.add(summary.getKey());
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+        return keys;
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key) {
+        return awsS3Client.getObject(new GetObjectRequest(bucket, key));
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key, final long start, final long end) {
+        return awsS3Client.getObject(new GetObjectRequest(bucket, key).withRange(start, end));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final String bucket, final String key) {
+        return awsS3Client.getObjectMetadata(new GetObjectMetadataRequest(bucket, key));
+    }
+
+    @Override
+    public boolean doesObjectExist(final String bucket, final String key) {
+        return awsS3Client.doesObjectExist(bucket, key);
+    }
+
+    @Override
+    public void deleteObject(final String bucket, final String key) {
+        awsS3Client.deleteObject(new DeleteObjectRequest(bucket, key));
+    }
+
+    @Override
+    public void headBucket(final String bucket) {
+        awsS3Client.headBucket(new HeadBucketRequest(bucket));
+    }
+
+    @Override
+    public URL generatePresignedUrl(final String bucket, final String key, final Date expiration) {
+        return awsS3Client.generatePresignedUrl(bucket, key, expiration);
+    }
+
+    @Override
+    public void shutdown() {
+        awsS3Client.shutdown();
+    }
+}
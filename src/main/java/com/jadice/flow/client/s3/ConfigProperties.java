@@ -1,6 +1,7 @@
 package com.jadice.flow.client.s3;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Objects;
 
 /**
@@ -24,6 +25,20 @@ public class ConfigProperties {
     boolean pathStyleAccessEnabled = true;
     // try to parse URI as AmazonS3URI first
     boolean amazonS3URIEnabled = true;
+    // maximum number of concurrent connections to the s3 storage (Apache pool size, Netty max concurrency),
+    // 0 uses S3ClientBuilder.DEFAULT_MAX_CONNECTIONS
+    int maxConnections = 0;
+    // number of pooled connections to pre-open when the client is created, 0 disables the warm-up
+    int warmUpConnections = 0;
+    // run the warm-up in the background instead of blocking the client construction
+    boolean warmUpAsync = false;
+    // the http stack used to talk to the s3 storage, see S3ClientBuilder.TRANSPORT_*
+    String transport = S3ClientBuilder.TRANSPORT_APACHE;
+    // derive the key from the content hash and skip uploads of content that is already stored
+    boolean deduplicationEnabled = false;
+    // how long a cached pack index is used before it is reloaded, i.e. how long a blob deleted by another client may
+    // still be served, 0 reloads the index for every read
+    Duration packIndexCacheTtl = Duration.ofSeconds(10);
 
     public ConfigProperties() {}
 
@@ -155,6 +170,54 @@ public class ConfigProperties {
         this.amazonS3URIEnabled = amazonS3URIEnabled;
     }
 
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    public void setWarmUpConnections(int warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    public boolean isWarmUpAsync() {
+        return warmUpAsync;
+    }
+
+    public void setWarmUpAsync(boolean warmUpAsync) {
+        this.warmUpAsync = warmUpAsync;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    public boolean isDeduplicationEnabled() {
+        return deduplicationEnabled;
+    }
+
+    public void setDeduplicationEnabled(boolean deduplicationEnabled) {
+        this.deduplicationEnabled = deduplicationEnabled;
+    }
+
+    public Duration getPackIndexCacheTtl() {
+        return packIndexCacheTtl;
+    }
+
+    public void setPackIndexCacheTtl(Duration packIndexCacheTtl) {
+        this.packIndexCacheTtl = packIndexCacheTtl;
+    }
+
     public static String sanitizePath(String s) {
       if (s == null || s.isEmpty()) {
         return "";
@@ -173,7 +236,11 @@ public class ConfigProperties {
             return false;
         ConfigProperties that = (ConfigProperties) o;
         return trustSelfSigned == that.trustSelfSigned && trustAll == that.trustAll && pathStyleAccessEnabled == that.pathStyleAccessEnabled
-            && amazonS3URIEnabled == that.amazonS3URIEnabled && Objects.equals(
+            && amazonS3URIEnabled == that.amazonS3URIEnabled && maxConnections == that.maxConnections
+            && warmUpConnections == that.warmUpConnections
+            && warmUpAsync == that.warmUpAsync && Objects.equals(transport, that.transport)
+            && deduplicationEnabled == that.deduplicationEnabled
+            && Objects.equals(packIndexCacheTtl, that.packIndexCacheTtl) && Objects.equals(
             endpoint, that.endpoint) && Objects.equals(bucket, that.bucket) && Objects.equals(region,
             that.region) && Objects.equals(accessKey, that.accessKey) && Objects.equals(secretKey,
             that.secretKey) && Objects.equals(protocol, that.protocol);
@@ -182,6 +249,7 @@ public class ConfigProperties {
     @Override
     public int hashCode() {
         return Objects.hash(endpoint, bucket, region, accessKey, secretKey, protocol, trustSelfSigned, trustAll,
-            pathStyleAccessEnabled, amazonS3URIEnabled);
+            pathStyleAccessEnabled, amazonS3URIEnabled, maxConnections, warmUpConnections, warmUpAsync, transport,
+            deduplicationEnabled, packIndexCacheTtl);
     }
 }
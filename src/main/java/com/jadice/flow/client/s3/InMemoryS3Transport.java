@@ -0,0 +1,175 @@
+package com.jadice.flow.client.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * {@link S3Transport} that keeps all objects in memory. It is the local stand-in behind
+ * {@code S3LoadGenerator --endpoint=local}, which measures the client-side overhead without a storage.
+ */
+class InMemoryS3Transport implements S3Transport {
+
+    /**
+     * The content and metadata of an object, replaced as a whole so that readers never see a mix of two versions.
+     */
+    private static class StoredObject {
+        final byte[] content;
+        final ObjectMetadata metadata;
+
+        StoredObject(final byte[] content, final ObjectMetadata metadata) {
+            this.content = content;
+            this.metadata = metadata;
+        }
+    }
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+
+    @Override
+    public void putObject(final String bucket, final String key, final InputStream stream,
+        final ObjectMetadata objectMetadata) {
+        final byte[] bytes = readAllBytes(stream);
+        synchronized (this) {
+            store(bucket + "/" + key, bytes, objectMetadata);
+        }
+    }
+
+    @Override
+    public boolean putObjectIfMatch(final String bucket, final String key, final InputStream stream,
+        final ObjectMetadata objectMetadata, final String eTag) {
+        final byte[] bytes = readAllBytes(stream);
+        synchronized (this) {
+            final StoredObject current = objects.get(bucket + "/" + key);
+            if (current == null || !current.metadata.getETag().equals(eTag)) {
+                return false;
+            }
+            store(bucket + "/" + key, bytes, objectMetadata);
+            return true;
+        }
+    }
+
+    @Override
+    public List<String> listObjects(final String bucket, final String prefix) {
+        return objects.keySet().stream() //
+            .filter(path -> path.startsWith(bucket + "/" + prefix)) //
+            .map(path -> path.substring(bucket.length() + 1)) //
+            .sorted() //
+            .collect(Collectors.toList());
+    }
+
+    private void store(final String path, final byte[] bytes, final ObjectMetadata objectMetadata) {
+        final ObjectMetadata copy = objectMetadata.clone();
+        copy.setContentLength(bytes.length);
+        copy.setHeader(Headers.ETAG, eTag(bytes));
+        objects.put(path, new StoredObject(bytes, copy));
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key) {
+        final StoredObject object = get(bucket, key);
+        return toS3Object(bucket, key, object, 0, object.content.length - 1);
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key, final long start, final long end) {
+        return toS3Object(bucket, key, get(bucket, key), start, end);
+    }
+
+    private static S3Object toS3Object(final String bucket, final String key, final StoredObject object,
+        final long start, final long end) {
+        final S3Object s3Object = new S3Object();
+        s3Object.setBucketName(bucket);
+        s3Object.setKey(key);
+        s3Object.setObjectMetadata(object.metadata.clone());
+        s3Object.setObjectContent(
+            new ByteArrayInputStream(Arrays.copyOfRange(object.content, (int) start, (int) end + 1)));
+        return s3Object;
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final String bucket, final String key) {
+        return get(bucket, key).metadata.clone();
+    }
+
+    @Override
+    public boolean doesObjectExist(final String bucket, final String key) {
+        return objects.containsKey(bucket + "/" + key);
+    }
+
+    @Override
+    public synchronized void deleteObject(final String bucket, final String key) {
+        objects.remove(bucket + "/" + key);
+    }
+
+    @Override
+    public void headBucket(final String bucket) {
+    }
+
+    @Override
+    public URL generatePresignedUrl(final String bucket, final String key, final Date expiration) {
+        try {
+            return new URL("http://localhost/" + bucket + "/" + key + "?Expires=" + expiration.getTime());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * @return the number of objects currently stored.
+     */
+    int size() {
+        return objects.size();
+    }
+
+    private StoredObject get(final String bucket, final String key) {
+        final StoredObject object = objects.get(bucket + "/" + key);
+        if (object == null) {
+            throw noSuchKey();
+        }
+        return object;
+    }
+
+    private static byte[] readAllBytes(final InputStream stream) {
+        try {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String eTag(final byte[] bytes) {
+        try {
+            return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(bytes)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static AmazonS3Exception noSuchKey() {
+        final AmazonS3Exception e = new AmazonS3Exception("The specified key does not exist.");
+        e.setStatusCode(404);
+        e.setErrorCode("NoSuchKey");
+        return e;
+    }
+}
@@ -0,0 +1,61 @@
+package com.jadice.flow.client.s3;
+
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Trust manager for transports that can't use the Apache HttpClient trust strategies. It mirrors
+ * {@code TrustSelfSignedStrategy} (a chain consisting of a single certificate is trusted) and {@code TrustAllStrategy}
+ * and delegates to the default trust store otherwise.
+ */
+class LenientTrustManager implements X509TrustManager {
+
+    private final X509TrustManager delegate;
+
+    private final boolean trustAll;
+
+    LenientTrustManager(final boolean trustAll) {
+        this.delegate = defaultTrustManager();
+        this.trustAll = trustAll;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        delegate.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        if (trustAll || chain.length == 1) {
+            return;
+        }
+        delegate.checkServerTrusted(chain, authType);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return delegate.getAcceptedIssuers();
+    }
+
+    private static X509TrustManager defaultTrustManager() {
+        try {
+            final TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+            for (final TrustManager trustManager : factory.getTrustManagers()) {
+                if (trustManager instanceof X509TrustManager) {
+                    return (X509TrustManager) trustManager;
+                }
+            }
+        } catch (NoSuchAlgorithmException | KeyStoreException e) {
+            throw new IllegalStateException("Failed to initialize the default TrustManager", e);
+        }
+        throw new IllegalStateException("No default X509TrustManager available");
+    }
+}
@@ -0,0 +1,279 @@
+package com.jadice.flow.client.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+/**
+ * {@link S3Transport} backed by the AWS SDK v2 asynchronous client with the non-blocking Netty http engine. All
+ * connections are served by a small event loop. The {@code *Async} methods return as soon as the request is handed to
+ * the event loop, so the number of in-flight requests is not bound to the number of caller threads. The blocking
+ * methods simply wait for their asynchronous counterpart.
+ * <p>
+ * Upload content of unknown length or up to {@link #IN_MEMORY_UPLOAD_LIMIT} bytes is read into memory on the calling
+ * thread, like the v1 client does for unknown lengths. Larger streams are fed into the event loop by a bounded pool of
+ * reader threads, as reading an {@link InputStream} blocks.
+ */
+public class NettyS3Transport implements S3Transport {
+
+    /**
+     * Uploads up to this size are buffered in memory instead of occupying a reader thread.
+     */
+    static final long IN_MEMORY_UPLOAD_LIMIT = 8L * 1024 * 1024;
+
+    /**
+     * The asynchronous aws s3 client instance.
+     */
+    private final S3AsyncClient s3AsyncClient;
+
+    /**
+     * The presigner, which works offline and does not use the http engine.
+     */
+    private final S3Presigner presigner;
+
+    /**
+     * Threads that feed large upload streams into the event loop.
+     */
+    private final ExecutorService streamReaderExecutor = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            final Thread thread = new Thread(runnable, "s3-netty-stream-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    public NettyS3Transport(final S3AsyncClient s3AsyncClient, final S3Presigner presigner) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.presigner = presigner;
+    }
+
+    @Override
+    public void putObject(final String bucket, final String key, final InputStream stream, final ObjectMetadata metadata) {
+        join(putObjectAsync(bucket, key, stream, metadata));
+    }
+
+    @Override
+    public CompletableFuture<Void> putObjectAsync(final String bucket, final String key, final InputStream stream,
+        final ObjectMetadata metadata) {
+        return putObjectAsync(PutObjectRequest.builder().bucket(bucket).key(key), stream, metadata);
+    }
+
+    @Override
+    public boolean putObjectIfMatch(final String bucket, final String key, final InputStream stream,
+        final ObjectMetadata metadata, final String eTag) {
+        try {
+            join(putObjectAsync(PutObjectRequest.builder().bucket(bucket).key(key).ifMatch(eTag), stream, metadata));
+            return true;
+        } catch (S3Exception e) {
+            // 412 if the ETag differs, 404 if the object was deleted in the meantime
+            if (e.statusCode() == 412 || e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Void> putObjectAsync(final PutObjectRequest.Builder request, final InputStream stream,
+        final ObjectMetadata metadata) {
+        if (metadata.getContentType() != null) {
+            request.contentType(metadata.getContentType());
+        }
+        if (!metadata.getUserMetadata().isEmpty()) {
+            request.metadata(metadata.getUserMetadata());
+        }
+        // v1 reports 0 for an unset content length, so look at the raw value to distinguish "unknown" from "empty"
+        final Long contentLength = (Long) metadata.getRawMetadataValue(Headers.CONTENT_LENGTH);
+        final AsyncRequestBody body;
+        if (contentLength == null || contentLength <= IN_MEMORY_UPLOAD_LIMIT) {
+            // S3 requires a content length, so buffer streams of unknown length
+            final byte[] content;
+            try {
+                content = stream.readAllBytes();
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(new UncheckedIOException(e));
+            }
+            body = AsyncRequestBody.fromBytes(content);
+            request.contentLength((long) content.length);
+        } else {
+            body = AsyncRequestBody.fromInputStream(stream, contentLength, streamReaderExecutor);
+            request.contentLength(contentLength);
+        }
+        return unwrap(s3AsyncClient.putObject(request.build(), body)).thenApply(response -> null);
+    }
+
+    @Override
+    public List<String> listObjects(final String bucket, final String prefix) {
+        final List<String> keys = new ArrayList<>();
+        join(s3AsyncClient.listObjectsV2Paginator(b -> b.bucket(bucket).prefix(prefix)).contents()
+            .subscribe(object -> keys.add(object.key())));
+        return keys;
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key) {
+        return join(getObjectAsync(bucket, key));
+    }
+
+    @Override
+    public CompletableFuture<S3Object> getObjectAsync(final String bucket, final String key) {
+        return getObjectAsync(bucket, key, GetObjectRequest.builder().bucket(bucket).key(key).build());
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key, final long start, final long end) {
+        return join(getObjectAsync(bucket, key,
+            GetObjectRequest.builder().bucket(bucket).key(key).range("bytes=" + start + "-" + end).build()));
+    }
+
+    private CompletableFuture<S3Object> getObjectAsync(final String bucket, final String key,
+        final GetObjectRequest request) {
+        return unwrap(s3AsyncClient.getObject(request, AsyncResponseTransformer.toBlockingInputStream())) //
+            .thenApply(content -> {
+                final GetObjectResponse response = content.response();
+                final S3Object s3Object = new S3Object();
+                s3Object.setBucketName(bucket);
+                s3Object.setKey(key);
+                s3Object.setObjectMetadata(toObjectMetadata(response.contentLength(), response.contentType(),
+                    response.eTag(), response.lastModified(), response.metadata()));
+                s3Object.setObjectContent(content);
+                return s3Object;
+            });
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final String bucket, final String key) {
+        return join(getObjectMetadataAsync(bucket, key));
+    }
+
+    @Override
+    public CompletableFuture<ObjectMetadata> getObjectMetadataAsync(final String bucket, final String key) {
+        return unwrap(s3AsyncClient.headObject(b -> b.bucket(bucket).key(key))) //
+            .thenApply(response -> toObjectMetadata(response.contentLength(), response.contentType(), response.eTag(),
+                response.lastModified(), response.metadata()));
+    }
+
+    @Override
+    public boolean doesObjectExist(final String bucket, final String key) {
+        return join(doesObjectExistAsync(bucket, key));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> doesObjectExistAsync(final String bucket, final String key) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        s3AsyncClient.headObject(b -> b.bucket(bucket).key(key)).whenComplete((response, e) -> {
+            final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause == null) {
+                result.complete(true);
+            } else if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 404) {
+                result.complete(false);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void deleteObject(final String bucket, final String key) {
+        join(deleteObjectAsync(bucket, key));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObjectAsync(final String bucket, final String key) {
+        return unwrap(s3AsyncClient.deleteObject(b -> b.bucket(bucket).key(key))).thenApply(response -> null);
+    }
+
+    @Override
+    public void headBucket(final String bucket) {
+        join(s3AsyncClient.headBucket(b -> b.bucket(bucket)));
+    }
+
+    @Override
+    public URL generatePresignedUrl(final String bucket, final String key, final Date expiration) {
+        final GetObjectPresignRequest request = GetObjectPresignRequest.builder() //
+            .signatureDuration(Duration.between(Instant.now(), expiration.toInstant())) //
+            .getObjectRequest(b -> b.bucket(bucket).key(key)) //
+            .build();
+        return presigner.presignGetObject(request).url();
+    }
+
+    @Override
+    public void shutdown() {
+        s3AsyncClient.close();
+        presigner.close();
+        streamReaderExecutor.shutdownNow();
+    }
+
+    private static ObjectMetadata toObjectMetadata(final Long contentLength, final String contentType,
+        final String eTag, final Instant lastModified, final Map<String, String> userMetadata) {
+        final ObjectMetadata metadata = new ObjectMetadata();
+        if (contentLength != null) {
+            metadata.setContentLength(contentLength);
+        }
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        if (eTag != null) {
+            metadata.setHeader(Headers.ETAG, eTag);
+        }
+        if (lastModified != null) {
+            metadata.setLastModified(Date.from(lastModified));
+        }
+        metadata.setUserMetadata(userMetadata);
+        return metadata;
+    }
+
+    /**
+     * Completes with the original exception instead of the {@link CompletionException} wrapper, so that callers of the
+     * asynchronous methods see the same exceptions as callers of the blocking ones.
+     */
+    private static <T> CompletableFuture<T> unwrap(final CompletableFuture<T> future) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Waits for the future and rethrows the original exception instead of the {@link CompletionException} wrapper.
+     */
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
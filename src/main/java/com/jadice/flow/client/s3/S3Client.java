@@ -1,23 +1,42 @@
 package com.jadice.flow.client.s3;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
 import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3URI;
-import com.amazonaws.services.s3.model.DeleteObjectRequest;
-import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
-import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 
 /**
@@ -26,15 +45,25 @@ import com.amazonaws.services.s3.model.S3Object;
  */
 public class S3Client {
 
+  /**
+   * The digest used to derive identifiers in deduplication mode.
+   */
+  private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+  /**
+   * Content up to this size is hashed in place if its stream supports mark/reset, larger content is spooled.
+   */
+  static final int IN_PLACE_HASH_LIMIT = 8 * 1024 * 1024;
+
   /**
    * Logging.
    */
   private final Logger logger = LoggerFactory.getLogger(S3Client.class);
 
   /**
-   * The aws s3 client instance.
+   * The transport used to talk to the s3 storage.
    */
-  private final AmazonS3 awsS3Client;
+  private final S3Transport transport;
 
   /**
    * The desired lifetime of a pre-signed url.
@@ -46,10 +75,22 @@ public class S3Client {
    */
   private final ConfigProperties configurationProperties;
 
+  /**
+   * Access to pack objects written by a {@link S3PackWriter}.
+   */
+  private final S3PackStore packStore;
+
+  /**
+   * The warm-up triggered at construction time or {@code null} if no warm-up was configured.
+   */
+  private final CompletableFuture<WarmUpResult> warmUpFuture;
+
   public S3Client(ConfigProperties configProperties, long presignedUrlLifetimeInMinutes) {
     this.configurationProperties = configProperties;
-    this.awsS3Client = new S3ClientBuilder().build(configProperties);
+    this.transport = new S3ClientBuilder().buildTransport(configProperties);
+    this.packStore = new S3PackStore(transport, configProperties.getPackIndexCacheTtl());
     this.presignedUrlLifetime = Duration.ofMinutes(presignedUrlLifetimeInMinutes);
+    this.warmUpFuture = startConfiguredWarmUp();
   }
 
   public S3Client( //
@@ -57,18 +98,150 @@ public class S3Client {
       final Duration presignedUrlLifetime //
   ) {
     this.configurationProperties = configProperties;
-    this.awsS3Client = new S3ClientBuilder().build(configProperties);
+    this.transport = new S3ClientBuilder().buildTransport(configProperties);
+    this.packStore = new S3PackStore(transport, configProperties.getPackIndexCacheTtl());
     this.presignedUrlLifetime = presignedUrlLifetime;
+    this.warmUpFuture = startConfiguredWarmUp();
   }
 
   public S3Client( //
       final ConfigProperties configProperties, //
       final AmazonS3 awsS3Client, //
       final Duration presignedUrlLifetime //
+  ) {
+    this(configProperties, new ApacheS3Transport(awsS3Client), presignedUrlLifetime);
+  }
+
+  public S3Client( //
+      final ConfigProperties configProperties, //
+      final S3Transport transport, //
+      final Duration presignedUrlLifetime //
   ) {
     this.configurationProperties = configProperties;
-    this.awsS3Client = awsS3Client;
+    this.transport = transport;
+    this.packStore = new S3PackStore(transport, configProperties.getPackIndexCacheTtl());
     this.presignedUrlLifetime = presignedUrlLifetime;
+    this.warmUpFuture = startConfiguredWarmUp();
+  }
+
+  /**
+   * Releases the connections and threads held by the underlying transport. The client must not be used afterwards.
+   */
+  public void shutdown() {
+    transport.shutdown();
+  }
+
+  /**
+   * Returns the warm-up that was started according to {@link ConfigProperties#getWarmUpConnections()}. A blocking
+   * warm-up is already completed when the constructor returns, an asynchronous one may still be running.
+   *
+   * @return the warm-up future or {@code null} if no warm-up was configured.
+   */
+  public CompletableFuture<WarmUpResult> getWarmUp() {
+    return warmUpFuture;
+  }
+
+  /**
+   * Warms up the client so that the first real requests don't pay for DNS resolution, TCP connect and TLS handshake.
+   * The endpoint host is resolved and up to {@link ConfigProperties#getWarmUpConnections()} (at least one) concurrent
+   * HEAD bucket requests are issued. Each successful request leaves a keep-alive connection in the pool and proves
+   * that the credentials grant access to the bucket. Pooled connections are still subject to the idle timeout of the
+   * underlying http client.
+   *
+   * @return the outcome of the warm-up.
+   * @throws IllegalStateException if the endpoint cannot be resolved or no HEAD bucket request succeeded.
+   */
+  public WarmUpResult warmUp() {
+    return join(warmUpAsync());
+  }
+
+  /**
+   * Runs {@link #warmUp()} in the background on a thread pool that is sized to the number of warm-up connections and
+   * shut down afterwards.
+   *
+   * @return a future that completes with the outcome of the warm-up.
+   */
+  public CompletableFuture<WarmUpResult> warmUpAsync() {
+    final ExecutorService executor = Executors.newFixedThreadPool(getWarmUpParallelism());
+    return warmUpAsync(executor).whenComplete((result, e) -> executor.shutdown());
+  }
+
+  /**
+   * Runs {@link #warmUp()} in the background. The resolution and every HEAD bucket request run as separate tasks on
+   * the given executor, no thread waits for another one.
+   *
+   * @param executor The executor that issues the warm-up requests.
+   * @return a future that completes with the outcome of the warm-up.
+   */
+  public CompletableFuture<WarmUpResult> warmUpAsync(final Executor executor) {
+    final long start = System.nanoTime();
+    final String bucket = configurationProperties.getBucket();
+    final int parallelism = getWarmUpParallelism();
+    final CompletableFuture<List<InetAddress>> addresses = CompletableFuture.supplyAsync(this::resolveEndpoint,
+        executor);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final List<CompletableFuture<Boolean>> heads = new ArrayList<>(parallelism);
+    for (int i = 0; i < parallelism; i++) {
+      heads.add(CompletableFuture.runAsync(() -> transport.headBucket(bucket), executor).handle((ignored, e) -> {
+        if (e != null) {
+          final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+          logger.debug("Warm-up request for bucket {} failed", bucket, cause);
+          failure.set(cause);
+        }
+        return e == null;
+      }));
+    }
+    return CompletableFuture.allOf(heads.toArray(new CompletableFuture<?>[0])).thenCombine(addresses,
+        (ignored, resolved) -> {
+          final int connections = (int) heads.stream().filter(CompletableFuture::join).count();
+          if (connections == 0) {
+            throw new IllegalStateException("Error while warming up s3 client: " + failure.get().getMessage());
+          }
+          final WarmUpResult result = new WarmUpResult(resolved, connections,
+              Duration.ofNanos(System.nanoTime() - start));
+          logger.info("Warmed up s3 client for bucket {} with {} connections in {} ms", bucket, connections,
+              result.getDuration().toMillis());
+          return result;
+        });
+  }
+
+  private int getWarmUpParallelism() {
+    return Math.max(1, configurationProperties.getWarmUpConnections());
+  }
+
+  /**
+   * Starts the warm-up configured for construction time. If a blocking warm-up fails, the transport is shut down
+   * before the exception propagates, as the caller never gets a client to release it.
+   */
+  private CompletableFuture<WarmUpResult> startConfiguredWarmUp() {
+    if (configurationProperties.getWarmUpConnections() <= 0) {
+      return null;
+    }
+    if (configurationProperties.isWarmUpAsync()) {
+      return warmUpAsync().whenComplete((result, e) -> {
+        if (e != null) {
+          logger.warn("Asynchronous warm-up of s3 client failed: {}", e.getMessage());
+        }
+      });
+    }
+    try {
+      return CompletableFuture.completedFuture(warmUp());
+    } catch (RuntimeException e) {
+      transport.shutdown();
+      throw e;
+    }
+  }
+
+  private List<InetAddress> resolveEndpoint() {
+    final URI endpoint = configurationProperties.getEndpoint();
+    final String host = endpoint.getHost() != null
+        ? endpoint.getHost()
+        : URI.create(configurationProperties.getProtocol() + "://" + endpoint).getHost();
+    try {
+      return Arrays.asList(InetAddress.getAllByName(host));
+    } catch (UnknownHostException e) {
+      throw new IllegalStateException("Error while resolving s3 endpoint: " + e.getMessage());
+    }
   }
 
   /**
@@ -95,24 +268,8 @@ public class S3Client {
     public URI putObjectAndCreatePsUri(final InputStream stream, final String mimeType, final String filename, final Long contentLength) {
     final String bucket = configurationProperties.getBucket();
     final Date expiration = computeExpirationDate(this.presignedUrlLifetime);
-    final ObjectMetadata metadata = new ObjectMetadata();
-    if (contentLength != null) {
-      metadata.setContentLength(contentLength);
-    }
-    metadata.setExpirationTime(expiration);
-    if (mimeType != null) {
-      metadata.setContentType(mimeType);
-    }
-    final String identifier = getIdentifier(filename);
-    final PutObjectRequest request = new PutObjectRequest( //
-        bucket, //
-        identifier, //
-        stream, //
-        metadata //
-    );
-        // we don't care about any kind of stupid read limit, as our streams are actually seekable. Take that, crappy InputStream hierarchy!
-    request.getRequestClientOptions().setReadLimit(Integer.MAX_VALUE);
-    awsS3Client.putObject(request);
+    final ObjectMetadata metadata = createMetadata(mimeType, contentLength, expiration);
+    final String identifier = upload(bucket, stream, filename, metadata);
     return createS3URI(bucket, identifier, expiration);
   }
 
@@ -140,7 +297,32 @@ public class S3Client {
     public URI putObject(final InputStream stream, final String mimeType, final String filename, final Long contentLength) {
     final String bucket = configurationProperties.getBucket();
     final Date expiration = computeExpirationDate(this.presignedUrlLifetime);
-    final String identifier = this.getIdentifier(filename);
+    final ObjectMetadata metadata = createMetadata(mimeType, contentLength, expiration);
+    final String identifier = upload(bucket, stream, filename, metadata);
+    return getUri(configurationProperties, identifier);
+  }
+
+  /**
+   * Non-blocking variant of {@link #putObject(InputStream, String, String, Long)}. With a transport that has
+   * non-blocking I/O the returned future completes once the upload has finished, without occupying the calling thread
+   * in the meantime. Reading or hashing the stream may still happen on the calling thread.
+   *
+   * @param stream The inputStream that will be uploaded.
+   * @param mimeType The mimeType of the inputStream that shall be uploaded.
+   * @param filename The filename of the file.
+   * @param contentLength The content length of the file that will be uploaded or {@code null} if unknown.
+   * @return a future that completes with the url to the uploaded s3 file.
+   */
+  public CompletableFuture<URI> putObjectAsync(final InputStream stream, final String mimeType, final String filename,
+      final Long contentLength) {
+    final String bucket = configurationProperties.getBucket();
+    final Date expiration = computeExpirationDate(this.presignedUrlLifetime);
+    final ObjectMetadata metadata = createMetadata(mimeType, contentLength, expiration);
+    return uploadAsync(bucket, stream, filename, metadata)
+        .thenApply(identifier -> getUri(configurationProperties, identifier));
+  }
+
+  private static ObjectMetadata createMetadata(final String mimeType, final Long contentLength, final Date expiration) {
     final ObjectMetadata metadata = new ObjectMetadata();
     if (contentLength != null) {
       metadata.setContentLength(contentLength);
@@ -149,16 +331,138 @@ public class S3Client {
     if (mimeType != null) {
       metadata.setContentType(mimeType);
     }
-    final PutObjectRequest request = new PutObjectRequest( //
-        bucket, //
-        identifier, //
-        stream, //
-        metadata //
-    );
-        // we don't care about any kind of stupid read limit, as our streams are actually seekable. Take that, crappy InputStream hierarchy!
-    request.getRequestClientOptions().setReadLimit(Integer.MAX_VALUE);
-    awsS3Client.putObject(request);
-    return getUri(configurationProperties, identifier);
+    return metadata;
+  }
+
+  private String upload(final String bucket, final InputStream stream, final String filename,
+      final ObjectMetadata metadata) {
+    return join(uploadAsync(bucket, stream, filename, metadata));
+  }
+
+  /**
+   * Uploads the stream either under a fresh identifier or, if {@link ConfigProperties#isDeduplicationEnabled()}, under
+   * an identifier derived from its content.
+   *
+   * @return a future that completes with the identifier the content is stored under.
+   */
+  private CompletableFuture<String> uploadAsync(final String bucket, final InputStream stream, final String filename,
+      final ObjectMetadata metadata) {
+    if (configurationProperties.isDeduplicationEnabled()) {
+      return uploadDeduplicatedAsync(bucket, stream, metadata);
+    }
+    final String identifier = getIdentifier(filename);
+    return transport.putObjectAsync(bucket, identifier, stream, metadata).thenApply(ignored -> identifier);
+  }
+
+  /**
+   * Hashes the content, so that a HEAD request can tell whether it is already stored before anything is transferred.
+   * Files and streams that support mark/reset for up to {@link #IN_PLACE_HASH_LIMIT} bytes are hashed in place and
+   * rewound, all other streams are spooled to a temporary file while hashing. Identical content always maps to the same
+   * identifier, hence the first upload determines the content type for everyone, and deleting the object affects every
+   * upload of that content.
+   */
+  private CompletableFuture<String> uploadDeduplicatedAsync(final String bucket, final InputStream stream,
+      final ObjectMetadata metadata) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+      final long length = hashInPlace(stream, digest);
+      if (length >= 0) {
+        metadata.setContentLength(length);
+        final String identifier = getContentIdentifier(digest.digest());
+        return uploadIfAbsentAsync(bucket, identifier,
+            () -> transport.putObjectAsync(bucket, identifier, stream, metadata));
+      }
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Error while hashing s3 object content: " + e.getMessage());
+    }
+
+    digest.reset();
+    Path spool = null;
+    final String identifier;
+    try {
+      spool = Files.createTempFile("s3-dedup-", ".tmp");
+      try (final OutputStream out = Files.newOutputStream(spool)) {
+        new DigestInputStream(stream, digest).transferTo(out);
+      }
+      identifier = getContentIdentifier(digest.digest());
+      metadata.setContentLength(Files.size(spool));
+    } catch (IOException e) {
+      deleteSpool(spool);
+      throw new IllegalStateException("Error while hashing s3 object content: " + e.getMessage());
+    }
+    final Path spooled = spool;
+    return uploadIfAbsentAsync(bucket, identifier, () -> {
+      final InputStream content;
+      try {
+        content = Files.newInputStream(spooled);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return transport.putObjectAsync(bucket, identifier, content, metadata).whenComplete((ignored, e) -> {
+        try {
+          content.close();
+        } catch (IOException closeFailure) {
+          logger.debug("Failed to close temporary file {}", spooled, closeFailure);
+        }
+      });
+    }).whenComplete((ignored, e) -> deleteSpool(spooled));
+  }
+
+  private CompletableFuture<String> uploadIfAbsentAsync(final String bucket, final String identifier,
+      final Supplier<CompletableFuture<Void>> upload) {
+    return transport.doesObjectExistAsync(bucket, identifier).thenCompose(exists -> {
+      if (exists) {
+        logger.debug("Skipping upload of {}, identical content is already stored", identifier);
+        return CompletableFuture.completedFuture(identifier);
+      }
+      return upload.get().thenApply(ignored -> identifier);
+    });
+  }
+
+  /**
+   * Hashes the remaining content of the stream and rewinds it, if it is a file or supports mark/reset for up to
+   * {@link #IN_PLACE_HASH_LIMIT} bytes.
+   *
+   * @return the length of the content, or -1 if the stream can't be rewound and nothing was consumed.
+   */
+  private static long hashInPlace(final InputStream stream, final MessageDigest digest) throws IOException {
+    if (stream instanceof FileInputStream) {
+      final FileChannel channel = ((FileInputStream) stream).getChannel();
+      final long position = channel.position();
+      final long length = hash(stream, digest, Long.MAX_VALUE);
+      channel.position(position);
+      return length;
+    }
+    if (stream.markSupported()) {
+      stream.mark(IN_PLACE_HASH_LIMIT + 1);
+      final long length = hash(stream, digest, IN_PLACE_HASH_LIMIT + 1);
+      stream.reset();
+      return length <= IN_PLACE_HASH_LIMIT ? length : -1;
+    }
+    return -1;
+  }
+
+  private static long hash(final InputStream stream, final MessageDigest digest, final long limit)
+      throws IOException {
+    final byte[] buffer = new byte[8192];
+    long length = 0;
+    int read;
+    while (length < limit && (read = stream.read(buffer, 0, (int) Math.min(buffer.length, limit - length))) != -1) {
+      digest.update(buffer, 0, read);
+      length += read;
+    }
+    return length;
+  }
+
+  private void deleteSpool(final Path spool) {
+    if (spool != null) {
+      try {
+        Files.deleteIfExists(spool);
+      } catch (IOException e) {
+        logger.warn("Failed to delete temporary file {}", spool, e);
+      }
+    }
   }
 
   /**
@@ -170,15 +474,35 @@ public class S3Client {
   public S3Object getObject(final URI s3Url) {
     logger.info("Handling file download {}", s3Url.toString());
     final String[] bucketNameAndKey = getBucketNameAndKey(s3Url, configurationProperties);
-    logger.debug("Creating GetObjectRequest with bucket={} and key={}", bucketNameAndKey[0], bucketNameAndKey[1]);
-    final GetObjectRequest req = new GetObjectRequest(bucketNameAndKey[0], bucketNameAndKey[1]);
     try {
-      return this.awsS3Client.getObject(req);
+      if (S3PackStore.isPackUri(s3Url, bucketNameAndKey[1])) {
+        return packStore.getEntry(bucketNameAndKey[0], bucketNameAndKey[1], S3PackStore.getEntryId(s3Url));
+      }
+      logger.debug("Creating GetObjectRequest with bucket={} and key={}", bucketNameAndKey[0], bucketNameAndKey[1]);
+      return this.transport.getObject(bucketNameAndKey[0], bucketNameAndKey[1]);
     } catch (Exception e) {
       throw new IllegalStateException("Error while fetching s3 object: " + e.getMessage());
     }
   }
 
+  /**
+   * Non-blocking variant of {@link #getObject(URI)}. Blobs within a pack are resolved synchronously.
+   *
+   * @param s3Url uri of the s3 object that shall be downloaded.
+   * @return a future that completes with the s3 object or with an IllegalStateException.
+   */
+  public CompletableFuture<S3Object> getObjectAsync(final URI s3Url) {
+    logger.info("Handling async file download {}", s3Url);
+    final String[] bucketNameAndKey = getBucketNameAndKey(s3Url, configurationProperties);
+    return withFailureMessage("Error while fetching s3 object: ", () -> {
+      if (S3PackStore.isPackUri(s3Url, bucketNameAndKey[1])) {
+        return CompletableFuture.completedFuture(
+            packStore.getEntry(bucketNameAndKey[0], bucketNameAndKey[1], S3PackStore.getEntryId(s3Url)));
+      }
+      return transport.getObjectAsync(bucketNameAndKey[0], bucketNameAndKey[1]);
+    });
+  }
+
   /**
    * Method to showcase the retrieval of a s3 object via its previously generated pre-signed url.
    * It just passes the URL on to the default {@link #getObject(URI)} method. 
@@ -199,15 +523,36 @@ public class S3Client {
   public void deleteObject(final URI presignedUri) {
     logger.info("Handling file delete {}", presignedUri.toString());
     final String[] bucketNameAndKey = getBucketNameAndKey(presignedUri, configurationProperties);
-    logger.debug("Creating DeleteObjectRequest with bucket={} and key={}", bucketNameAndKey[0], bucketNameAndKey[1]);
-    DeleteObjectRequest req = new DeleteObjectRequest(bucketNameAndKey[0], bucketNameAndKey[1]);
     try {
-      awsS3Client.deleteObject(req);
+      if (S3PackStore.isPackUri(presignedUri, bucketNameAndKey[1])) {
+        packStore.deleteEntry(bucketNameAndKey[0], bucketNameAndKey[1], S3PackStore.getEntryId(presignedUri));
+        return;
+      }
+      logger.debug("Creating DeleteObjectRequest with bucket={} and key={}", bucketNameAndKey[0], bucketNameAndKey[1]);
+      transport.deleteObject(bucketNameAndKey[0], bucketNameAndKey[1]);
     } catch (Exception e) {
       throw new IllegalStateException("Error while deleting s3 object: " + e.getMessage());
     }
   }
 
+  /**
+   * Non-blocking variant of {@link #deleteObject(URI)}. Blobs within a pack are deleted synchronously.
+   *
+   * @param s3Url uri of the s3 object that shall be deleted.
+   * @return a future that completes when the object is deleted or with an IllegalStateException.
+   */
+  public CompletableFuture<Void> deleteObjectAsync(final URI s3Url) {
+    logger.info("Handling async file delete {}", s3Url);
+    final String[] bucketNameAndKey = getBucketNameAndKey(s3Url, configurationProperties);
+    return withFailureMessage("Error while deleting s3 object: ", () -> {
+      if (S3PackStore.isPackUri(s3Url, bucketNameAndKey[1])) {
+        packStore.deleteEntry(bucketNameAndKey[0], bucketNameAndKey[1], S3PackStore.getEntryId(s3Url));
+        return CompletableFuture.completedFuture(null);
+      }
+      return transport.deleteObjectAsync(bucketNameAndKey[0], bucketNameAndKey[1]);
+    });
+  }
+
   /**
    * Method to showcase the retrieval of s3 object metadata for a url.
    *
@@ -217,22 +562,127 @@ public class S3Client {
   public ObjectMetadata getObjectMetadata(final URI s3Url) {
     logger.info("Handling get ObjectMetadata {}", s3Url);
     final String[] bucketNameAndKey = getBucketNameAndKey(s3Url, configurationProperties);
-    logger.debug("Creating GetObjectMetadataRequest with bucket={} and key={}", bucketNameAndKey[0], bucketNameAndKey[1]);
-    final GetObjectMetadataRequest req = new GetObjectMetadataRequest(bucketNameAndKey[0], bucketNameAndKey[1]);
     try {
-      return this.awsS3Client.getObjectMetadata(req);
+      if (S3PackStore.isPackUri(s3Url, bucketNameAndKey[1])) {
+        return packStore.getEntryMetadata(bucketNameAndKey[0], bucketNameAndKey[1], S3PackStore.getEntryId(s3Url));
+      }
+      logger.debug("Creating GetObjectMetadataRequest with bucket={} and key={}", bucketNameAndKey[0], bucketNameAndKey[1]);
+      return this.transport.getObjectMetadata(bucketNameAndKey[0], bucketNameAndKey[1]);
     } catch (Exception e) {
       throw new IllegalStateException("Error while fetching s3 object metadata: " + e.getMessage());
     }
   }
 
+  /**
+   * Non-blocking variant of {@link #getObjectMetadata(URI)}.
+   *
+   * @param s3Url uri of the s3 object whose metadata shall be retrieved.
+   * @return a future that completes with the metadata or with an IllegalStateException.
+   */
+  public CompletableFuture<ObjectMetadata> getObjectMetadataAsync(final URI s3Url) {
+    logger.info("Handling async get ObjectMetadata {}", s3Url);
+    final String[] bucketNameAndKey = getBucketNameAndKey(s3Url, configurationProperties);
+    return withFailureMessage("Error while fetching s3 object metadata: ", () -> {
+      if (S3PackStore.isPackUri(s3Url, bucketNameAndKey[1])) {
+        return CompletableFuture.completedFuture(
+            packStore.getEntryMetadata(bucketNameAndKey[0], bucketNameAndKey[1], S3PackStore.getEntryId(s3Url)));
+      }
+      return transport.getObjectMetadataAsync(bucketNameAndKey[0], bucketNameAndKey[1]);
+    });
+  }
+
+  /**
+   * Creates a writer that packs many small blobs into pack objects below {@code <subdir>packs/}. The uris it returns
+   * are resolved by {@link #getObject(URI)} into ranged GETs within the pack and can be deleted via
+   * {@link #deleteObject(URI)}.
+   *
+   * @param maxPackSize The size in bytes at which a pack is uploaded and a new one is started.
+   * @return a new pack writer.
+   */
+  public S3PackWriter createPackWriter(final int maxPackSize) {
+    return new S3PackWriter(packStore, configurationProperties, maxPackSize);
+  }
+
+  /**
+   * Rewrites a pack without its deleted entries. The uris of the remaining blobs stay valid.
+   *
+   * @param packUri uri of the pack or of any blob within the pack.
+   * @param minDeletedRatio The minimum share of the pack's bytes that must belong to deleted blobs.
+   * @return {@code true} if the pack was compacted, {@code false} if too few bytes would be reclaimed.
+   */
+  public boolean compactPack(final URI packUri, final double minDeletedRatio) {
+    logger.info("Handling pack compaction {}", packUri);
+    final String[] bucketNameAndKey = getBucketNameAndKey(packUri, configurationProperties);
+    try {
+      return packStore.compact(bucketNameAndKey[0], bucketNameAndKey[1], minDeletedRatio);
+    } catch (Exception e) {
+      throw new IllegalStateException("Error while compacting s3 pack: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Compacts every pack below {@code <subdir>packs/} whose deleted blobs make up at least the given share of its
+   * bytes. This is meant to be run periodically as a maintenance job; packs that fail to compact are logged and
+   * skipped.
+   *
+   * @param minDeletedRatio The minimum share of a pack's bytes that must belong to deleted blobs.
+   * @return the number of compacted packs.
+   */
+  public int compactPacks(final double minDeletedRatio) {
+    logger.info("Handling compaction of all packs");
+    try {
+      return packStore.compactAll(configurationProperties.getBucket(),
+          configurationProperties.getSubdir() + S3PackStore.PACK_DIR, minDeletedRatio);
+    } catch (Exception e) {
+      throw new IllegalStateException("Error while compacting s3 packs: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Runs the call and maps any failure, synchronous or asynchronous, to an IllegalStateException like the blocking
+   * methods do.
+   */
+  private static <T> CompletableFuture<T> withFailureMessage(final String message,
+      final Supplier<CompletableFuture<T>> call) {
+    CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      future = CompletableFuture.failedFuture(e);
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    future.whenComplete((value, e) -> {
+      if (e == null) {
+        result.complete(value);
+      } else {
+        final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        result.completeExceptionally(new IllegalStateException(message + cause.getMessage()));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Waits for the future and rethrows the original exception instead of the {@link CompletionException} wrapper.
+   */
+  private static <T> T join(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
   protected static Date computeExpirationDate(final Duration lifetime) {
     final LocalDateTime expiry = LocalDateTime.now().plus(lifetime);
     return Date.from(expiry.atZone(ZoneId.systemDefault()).toInstant());
   }
 
   protected URI createS3URI(final String bucket, final String fileName, final Date expiration) {
-    return URI.create(awsS3Client.generatePresignedUrl(bucket, fileName, expiration).toString());
+    return URI.create(transport.generatePresignedUrl(bucket, fileName, expiration).toString());
   }
 
   protected String getIdentifier(final String filename) {
@@ -243,6 +693,11 @@ public class S3Client {
     }
   }
 
+  protected String getContentIdentifier(final byte[] contentHash) {
+    return configurationProperties.getSubdir()
+        + String.format("%0" + (contentHash.length * 2) + "x", new BigInteger(1, contentHash));
+  }
+
   protected static URI getUri(ConfigProperties configProperties, String identifier) {
     final String scheme = configProperties.getEndpoint().getScheme() != null
         ? ""
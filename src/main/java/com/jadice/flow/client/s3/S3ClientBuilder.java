@@ -1,10 +1,12 @@
 package com.jadice.flow.client.s3;
 
+import java.net.URI;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
 
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustAllStrategy;
@@ -22,8 +24,44 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.Region;
 
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
 public class S3ClientBuilder {
 
+    /**
+     * Transport backed by the AWS SDK v1 client and the blocking Apache HttpClient.
+     */
+    public static final String TRANSPORT_APACHE = "apache";
+
+    /**
+     * Transport backed by the AWS SDK v2 asynchronous client and the non-blocking Netty http engine.
+     */
+    public static final String TRANSPORT_NETTY = "netty";
+
+    /**
+     * Maximum number of concurrent connections if {@link ConfigProperties#getMaxConnections()} is not set. This matches
+     * the default pool size of the AWS SDK v1 client.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+
+    public S3Transport buildTransport(final ConfigProperties configProperties) {
+        final String transport = configProperties.getTransport();
+        if (transport == null || TRANSPORT_APACHE.equalsIgnoreCase(transport)) {
+            return new ApacheS3Transport(build(configProperties));
+        } else if (TRANSPORT_NETTY.equalsIgnoreCase(transport)) {
+            return buildNettyTransport(configProperties);
+        } else {
+            throw new IllegalArgumentException("Unknown transport: " + transport);
+        }
+    }
+
     public AmazonS3 build(final ConfigProperties configProperties) {
         final String region = determineRegion(configProperties);
         final AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard().withEndpointConfiguration(
@@ -49,9 +87,68 @@ public class S3ClientBuilder {
             apacheHttpClientConfig.setSslSocketFactory(new SSLConnectionSocketFactory(sslContext));
             builder.withClientConfiguration(clientConfiguration);
         }
+
+        clientConfiguration.setMaxConnections(determineMaxConnections(configProperties));
+        builder.withClientConfiguration(clientConfiguration);
         return builder.build();
     }
 
+    /**
+     * The configured maximum number of connections, raised if necessary so that the pool can hold all connections
+     * opened during the warm-up.
+     */
+    static int determineMaxConnections(final ConfigProperties configProperties) {
+        final int maxConnections = configProperties.getMaxConnections() > 0
+            ? configProperties.getMaxConnections()
+            : DEFAULT_MAX_CONNECTIONS;
+        return Math.max(maxConnections, configProperties.getWarmUpConnections());
+    }
+
+    private S3Transport buildNettyTransport(final ConfigProperties configProperties) {
+        final software.amazon.awssdk.regions.Region region = software.amazon.awssdk.regions.Region.of(
+            determineRegion(configProperties));
+        final URI endpoint = determineEndpointWithScheme(configProperties);
+        final StaticCredentialsProvider credentialsProvider = StaticCredentialsProvider.create(
+            AwsBasicCredentials.create(configProperties.getAccessKey(), configProperties.getSecretKey()));
+
+        final NettyNioAsyncHttpClient.Builder httpClientBuilder = NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(determineMaxConnections(configProperties));
+        if (configProperties.isTrustSelfSigned() || configProperties.isTrustAll()) {
+            // trust self-signed certificates
+            httpClientBuilder.tlsTrustManagersProvider(
+                () -> new TrustManager[]{new LenientTrustManager(configProperties.isTrustAll())});
+        }
+
+        final S3AsyncClient s3AsyncClient = S3AsyncClient.builder() //
+            .region(region) //
+            .endpointOverride(endpoint) //
+            .credentialsProvider(credentialsProvider) //
+            .forcePathStyle(configProperties.isPathStyleAccessEnabled()) //
+            .httpClientBuilder(httpClientBuilder) //
+            // since 2.30 checksums are sent as aws-chunked trailers by default, which many s3 compatible stores reject
+            .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED) //
+            .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED) //
+            .build();
+        final S3Presigner presigner = S3Presigner.builder() //
+            .region(region) //
+            .endpointOverride(endpoint) //
+            .credentialsProvider(credentialsProvider) //
+            .serviceConfiguration(S3Configuration.builder()
+                .pathStyleAccessEnabled(configProperties.isPathStyleAccessEnabled()).build()) //
+            .build();
+        return new NettyS3Transport(s3AsyncClient, presigner);
+    }
+
+    protected URI determineEndpointWithScheme(final ConfigProperties configProperties) {
+      final URI endpoint = configProperties.getEndpoint();
+      if (endpoint.getScheme() != null) {
+        return endpoint;
+      }
+      // the v1 client falls back to https as well if no protocol is configured
+      final String protocol = configProperties.getProtocol() != null ? configProperties.getProtocol() : "https";
+      return URI.create(protocol + "://" + endpoint);
+    }
+
     private TrustStrategy getTrustStrategy(final ConfigProperties configProperties) {
         if (configProperties.isTrustAll()) {
             return TrustAllStrategy.INSTANCE;
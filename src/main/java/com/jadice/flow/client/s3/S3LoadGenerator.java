@@ -0,0 +1,739 @@
+package com.jadice.flow.client.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Command line load generator that drives a {@link S3Client} with a configurable mix of operations and reports
+ * throughput, transferred bytes and latency percentiles. It is the main class of the jar-with-dependencies:
+ *
+ * <pre>
+ * java -jar s3-java-jar-with-dependencies.jar --endpoint=https://minio.local:9000 --bucket=test \
+ *     --access-key=... --secret-key=... --mix=put:40,get:40,head:10,delete:5,presign:5 \
+ *     --sizes=1k,64k,1m --threads=32 --duration=60 --output=results.json
+ * </pre>
+ *
+ * Use {@code --endpoint=local} to run against an in-memory stand-in instead of a real storage. With
+ * {@code --async=<n>}, up to n requests are kept in flight through the asynchronous client methods instead of one
+ * blocking request per thread.
+ */
+public class S3LoadGenerator {
+
+    /**
+     * Operations the load generator can issue.
+     */
+    enum Operation {
+        PUT, GET, HEAD, DELETE, PRESIGN
+    }
+
+    static final String LOCAL_ENDPOINT = "local";
+
+    private static final String USAGE = "Usage: java -jar <jar> --endpoint=<url|local> --bucket=<bucket> " //
+        + "[--subdir=<dir>] [--region=<region>] [--access-key=<key>] [--secret-key=<key>] [--protocol=<http|https>] " //
+        + "[--transport=<apache|netty>] [--trust-self-signed=<bool>] [--trust-all=<bool>] [--path-style=<bool>] " //
+        + "[--mix=put:40,get:40,head:10,delete:5,presign:5] [--sizes=1k,64k] [--threads=16] [--duration=<seconds>] " //
+        + "[--async=<max in-flight>] [--max-connections=<connections>] [--preload=<objects>] " //
+        + "[--max-objects=<objects>] [--output=<results.json>]";
+
+    private final Map<String, String> options;
+
+    private final ConfigProperties configProperties;
+
+    private final S3Client s3Client;
+
+    private final Map<Operation, Integer> mix;
+
+    private final int mixTotal;
+
+    private final int[] sizes;
+
+    private final byte[][] payloads;
+
+    private final int threads;
+
+    private final Duration duration;
+
+    private final int preload;
+
+    /**
+     * The maximum number of concurrent asynchronous requests, 0 if the worker threads issue blocking requests.
+     */
+    private final int maxInFlight;
+
+    /**
+     * The maximum number of objects in the pool. Once it is reached, a put replaces a random object of the pool.
+     */
+    private final int maxObjects;
+
+    /**
+     * Uris of the objects that get, head, delete and presign operations pick from. An object is removed from the pool
+     * while an operation uses it.
+     */
+    private final List<URI> objects = new ArrayList<>();
+
+    /**
+     * The number of objects in the pool, in use or being created by a put that doesn't replace another object. Guarded
+     * by the lock on {@link #objects}.
+     */
+    private int liveObjects;
+
+    /**
+     * An operation together with the object it works on. For a put into a full pool, the target is the object that the
+     * new one replaces.
+     */
+    private static class Job {
+        final Operation operation;
+        final URI target;
+
+        Job(final Operation operation, final URI target) {
+            this.operation = operation;
+            this.target = target;
+        }
+    }
+
+    S3LoadGenerator(final Map<String, String> options) {
+        this(options, LOCAL_ENDPOINT.equals(options.get("endpoint")) ? new InMemoryS3Transport() : null);
+    }
+
+    /**
+     * @param transport The transport to use or {@code null} to build one from the options.
+     */
+    S3LoadGenerator(final Map<String, String> options, final S3Transport transport) {
+        this.options = options;
+        this.mix = parseMix(options.getOrDefault("mix", "put:40,get:40,head:10,delete:5,presign:5"));
+        this.mixTotal = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.sizes = parseSizes(options.getOrDefault("sizes", "64k"));
+        this.threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        if (threads <= 0) {
+            throw new IllegalArgumentException("--threads must be positive: " + threads);
+        }
+        this.maxInFlight = Integer.parseInt(options.getOrDefault("async", "0"));
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("--async must not be negative: " + maxInFlight);
+        }
+        this.duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("--duration must be positive: " + duration.getSeconds());
+        }
+        this.maxObjects = Integer.parseInt(options.getOrDefault("max-objects", "1000"));
+        if (maxObjects <= 0) {
+            throw new IllegalArgumentException("--max-objects must be positive: " + maxObjects);
+        }
+        this.preload = Integer.parseInt(options.getOrDefault("preload", "100"));
+        if (preload < 0 || preload > maxObjects) {
+            throw new IllegalArgumentException("--preload must be between 0 and --max-objects: " + preload);
+        }
+        this.payloads = new byte[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            payloads[i] = new byte[sizes[i]];
+            ThreadLocalRandom.current().nextBytes(payloads[i]);
+        }
+        this.configProperties = createConfigProperties(options);
+        this.s3Client = transport != null
+            ? new S3Client(configProperties, transport, Duration.ofHours(1))
+            : new S3Client(configProperties, Duration.ofHours(1));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options;
+        final S3LoadGenerator generator;
+        try {
+            options = parseArgs(args);
+            generator = new S3LoadGenerator(options);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // invalid options or a failed warm-up, e.g. wrong credentials or an unreachable endpoint
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        try {
+            final Report report = generator.run();
+            report.print(System.out);
+            final String output = options.get("output");
+            if (output != null) {
+                report.writeJson(Paths.get(output));
+                System.out.println("Results written to " + output);
+            }
+        } finally {
+            generator.s3Client.shutdown();
+        }
+    }
+
+    /**
+     * Preloads the configured number of objects, runs the operation mix for the configured duration and removes all
+     * objects that are left afterwards, even if the run failed.
+     */
+    Report run() throws InterruptedException {
+        try {
+            for (int i = 0; i < preload; i++) {
+                addObject(put(ThreadLocalRandom.current().nextInt(sizes.length)));
+                adjustLiveObjects(1);
+            }
+            final Instant start = Instant.now();
+            final long deadline = System.nanoTime() + duration.toNanos();
+            final Map<Operation, Stats> total = maxInFlight > 0 ? runAsync(deadline) : runBlocking(deadline);
+            final Duration elapsed = Duration.between(start, Instant.now());
+            return new Report(options, start, elapsed, threads, maxInFlight, total);
+        } finally {
+            cleanup();
+        }
+    }
+
+    /**
+     * Runs the mix on {@link #threads} worker threads that each issue one blocking request at a time.
+     */
+    private Map<Operation, Stats> runBlocking(final long deadline) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Map<Operation, Stats>>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> work(deadline)));
+        }
+        final Map<Operation, Stats> total = new EnumMap<>(Operation.class);
+        try {
+            for (final Future<Map<Operation, Stats>> future : futures) {
+                future.get().forEach((operation, stats) -> total.computeIfAbsent(operation, o -> new Stats()).merge(stats));
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load generator thread failed: " + e.getCause().getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return total;
+    }
+
+    private Map<Operation, Stats> work(final long deadline) {
+        final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        while (System.nanoTime() < deadline) {
+            final Job job = pickJob();
+            final Stats operationStats = stats.computeIfAbsent(job.operation, o -> new Stats());
+            final long begin = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                final long bytes = execute(job);
+                operationStats.record(System.nanoTime() - begin, bytes);
+                succeeded = true;
+            } catch (RuntimeException e) {
+                operationStats.error();
+            } finally {
+                release(job, succeeded).join();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Runs the mix through the asynchronous {@link S3Client} methods with up to {@link #maxInFlight} requests in
+     * flight. The calling thread only starts requests, the content of GET responses is drained by {@link #threads}
+     * reader threads.
+     */
+    private Map<Operation, Stats> runAsync(final long deadline) throws InterruptedException {
+        final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final ExecutorService contentReader = Executors.newFixedThreadPool(threads);
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (!inFlight.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+                final Job job = pickJob();
+                final long begin = System.nanoTime();
+                CompletableFuture<Long> future;
+                try {
+                    future = executeAsync(job, contentReader);
+                } catch (RuntimeException e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                future.handle((bytes, e) -> {
+                    synchronized (stats) {
+                        final Stats operationStats = stats.computeIfAbsent(job.operation, o -> new Stats());
+                        if (e == null) {
+                            operationStats.record(System.nanoTime() - begin, bytes);
+                        } else {
+                            operationStats.error();
+                        }
+                    }
+                    return e == null;
+                }).thenCompose(succeeded -> release(job, succeeded)).whenComplete((ignored, e) -> inFlight.release());
+            }
+            // wait for the requests that are still in flight
+            if (!inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Requests still in flight after the run");
+            }
+        } finally {
+            contentReader.shutdownNow();
+        }
+        // all permits are back, so every completion has updated the stats
+        return stats;
+    }
+
+    private long execute(final Job job) {
+        switch (job.operation) {
+            case PUT:
+                final int sizeIndex = ThreadLocalRandom.current().nextInt(sizes.length);
+                addObject(put(sizeIndex));
+                return sizes[sizeIndex];
+            case GET:
+                return drain(s3Client.getObject(job.target));
+            case HEAD:
+                s3Client.getObjectMetadata(job.target);
+                return 0;
+            case DELETE:
+                s3Client.deleteObject(job.target);
+                return 0;
+            case PRESIGN:
+                return presign(job.target);
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + job.operation);
+        }
+    }
+
+    private CompletableFuture<Long> executeAsync(final Job job, final Executor contentReader) {
+        switch (job.operation) {
+            case PUT:
+                final int sizeIndex = ThreadLocalRandom.current().nextInt(sizes.length);
+                return s3Client.putObjectAsync(new ByteArrayInputStream(payloads[sizeIndex]),
+                    "application/octet-stream", "loadtest.bin", (long) sizes[sizeIndex]).thenApply(uri -> {
+                        addObject(uri);
+                        return (long) sizes[sizeIndex];
+                    });
+            case GET:
+                // reading the content blocks, so it must not happen on the thread that completes the response
+                return s3Client.getObjectAsync(job.target).thenApplyAsync(this::drain, contentReader);
+            case HEAD:
+                return s3Client.getObjectMetadataAsync(job.target).thenApply(metadata -> 0L);
+            case DELETE:
+                return s3Client.deleteObjectAsync(job.target).thenApply(ignored -> 0L);
+            case PRESIGN:
+                return CompletableFuture.completedFuture(presign(job.target));
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + job.operation);
+        }
+    }
+
+    private URI put(final int sizeIndex) {
+        return s3Client.putObject(new ByteArrayInputStream(payloads[sizeIndex]), "application/octet-stream",
+            "loadtest.bin", (long) sizes[sizeIndex]);
+    }
+
+    private long drain(final S3Object s3Object) {
+        try (final InputStream content = s3Object.getObjectContent()) {
+            return content.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while reading s3 object: " + e.getMessage());
+        }
+    }
+
+    private long presign(final URI target) {
+        final String[] bucketNameAndKey = S3Client.getBucketNameAndKey(target, configProperties);
+        s3Client.createS3URI(bucketNameAndKey[0], bucketNameAndKey[1],
+            S3Client.computeExpirationDate(Duration.ofMinutes(5)));
+        return 0;
+    }
+
+    private Operation pickOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(mixTotal);
+        for (final Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Operation mix is empty");
+    }
+
+    /**
+     * Picks the next operation and takes its object out of the pool, so that a concurrent delete can't remove it. If
+     * the pool is empty, a put refills it instead. Once {@link #maxObjects} objects exist, a put replaces one of them.
+     */
+    private Job pickJob() {
+        final Operation operation = pickOperation();
+        synchronized (objects) {
+            if (operation != Operation.PUT || liveObjects >= maxObjects) {
+                final URI target = takeObject();
+                if (target != null) {
+                    return new Job(operation, target);
+                }
+            }
+            // all objects may be in use, in which case the limit is exceeded by at most the number of concurrent jobs
+            liveObjects++;
+            return new Job(Operation.PUT, null);
+        }
+    }
+
+    /**
+     * Returns the object of a finished job to the pool, unless it was deleted or replaced by a new object. A replaced
+     * object is deleted outside of the measurement.
+     */
+    private CompletableFuture<Void> release(final Job job, final boolean succeeded) {
+        if (job.target == null) {
+            if (!succeeded) {
+                // the put that should have created an object failed
+                adjustLiveObjects(-1);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        if (succeeded && job.operation == Operation.DELETE) {
+            adjustLiveObjects(-1);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (succeeded && job.operation == Operation.PUT) {
+            return s3Client.deleteObjectAsync(job.target).handle((ignored, e) -> {
+                if (e != null) {
+                    // keep it in the pool, so that the cleanup removes it
+                    addObject(job.target);
+                    adjustLiveObjects(1);
+                }
+                return null;
+            });
+        }
+        addObject(job.target);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void adjustLiveObjects(final int delta) {
+        synchronized (objects) {
+            liveObjects += delta;
+        }
+    }
+
+    /**
+     * Removes a random object from the pool. The caller must hold the lock on {@link #objects}.
+     *
+     * @return the object or {@code null} if the pool is empty.
+     */
+    private URI takeObject() {
+        if (objects.isEmpty()) {
+            return null;
+        }
+        // swap with the last element to remove in constant time
+        final int index = ThreadLocalRandom.current().nextInt(objects.size());
+        final URI uri = objects.get(index);
+        objects.set(index, objects.get(objects.size() - 1));
+        objects.remove(objects.size() - 1);
+        return uri;
+    }
+
+    private void addObject(final URI uri) {
+        synchronized (objects) {
+            objects.add(uri);
+        }
+    }
+
+    /**
+     * Deletes all objects left in the pool, using {@link #threads} threads.
+     */
+    private void cleanup() throws InterruptedException {
+        final List<URI> remaining;
+        synchronized (objects) {
+            remaining = new ArrayList<>(objects);
+            objects.clear();
+            liveObjects = 0;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (final URI uri : remaining) {
+            executor.execute(() -> {
+                try {
+                    s3Client.deleteObject(uri);
+                } catch (RuntimeException e) {
+                    // a delete that failed during the run may have removed it anyway
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ConfigProperties createConfigProperties(final Map<String, String> options) {
+        final String endpoint = require(options, "endpoint");
+        final ConfigProperties configProperties = new ConfigProperties();
+        configProperties.setBucket(require(options, "bucket"));
+        configProperties.setSubdir(options.getOrDefault("subdir", "loadtest"));
+        configProperties.setRegion(options.get("region"));
+        configProperties.setAccessKey(options.get("access-key"));
+        configProperties.setSecretKey(options.get("secret-key"));
+        configProperties.setProtocol(options.getOrDefault("protocol", "https"));
+        configProperties.setTransport(options.getOrDefault("transport", S3ClientBuilder.TRANSPORT_APACHE));
+        configProperties.setTrustSelfSigned(Boolean.parseBoolean(options.getOrDefault("trust-self-signed", "false")));
+        configProperties.setTrustAll(Boolean.parseBoolean(options.getOrDefault("trust-all", "false")));
+        configProperties.setPathStyleAccessEnabled(Boolean.parseBoolean(options.getOrDefault("path-style", "true")));
+        if (LOCAL_ENDPOINT.equals(endpoint)) {
+            configProperties.setEndpoint(URI.create("http://localhost"));
+        } else {
+            configProperties.setEndpoint(URI.create(endpoint));
+            // open one connection per worker thread up front, so that the first measurements don't include handshakes
+            configProperties.setWarmUpConnections(Integer.parseInt(options.getOrDefault("threads", "16")));
+        }
+        // allow as many connections as requests can be in flight
+        final int concurrency = Math.max(Integer.parseInt(options.getOrDefault("threads", "16")),
+            Integer.parseInt(options.getOrDefault("async", "0")));
+        configProperties.setMaxConnections(
+            Integer.parseInt(options.getOrDefault("max-connections", String.valueOf(concurrency))));
+        return configProperties;
+    }
+
+    static Map<String, String> parseArgs(final String[] args) {
+        final Map<String, String> options = new LinkedHashMap<>();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator == -1) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    static Map<Operation, Integer> parseMix(final String mix) {
+        final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (final String part : mix.split(",")) {
+            final String[] operationAndWeight = part.split(":");
+            if (operationAndWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid operation mix: " + mix);
+            }
+            final int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(operationAndWeight[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Invalid operation mix: " + mix);
+        }
+        return weights;
+    }
+
+    static int[] parseSizes(final String sizes) {
+        return Arrays.stream(sizes.split(",")).map(String::trim).mapToInt(size -> {
+            final String lower = size.toLowerCase(Locale.ROOT);
+            final int bytes;
+            if (lower.endsWith("k")) {
+                bytes = Integer.parseInt(lower.substring(0, lower.length() - 1)) * 1024;
+            } else if (lower.endsWith("m")) {
+                bytes = Integer.parseInt(lower.substring(0, lower.length() - 1)) * 1024 * 1024;
+            } else {
+                bytes = Integer.parseInt(lower);
+            }
+            if (bytes < 0) {
+                throw new IllegalArgumentException("Invalid object size: " + size);
+            }
+            return bytes;
+        }).toArray();
+    }
+
+    private static String require(final Map<String, String> options, final String name) {
+        final String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing argument --" + name);
+        }
+        return value;
+    }
+
+    /**
+     * Latencies, transferred bytes and errors of one operation type. Latencies are counted in a log-linear histogram
+     * of microseconds with {@link #SUB_BUCKETS} buckets per power of two, so the memory is fixed regardless of the run
+     * length and percentiles are accurate to within 1/{@value #SUB_BUCKETS} of the value. The maximum is exact.
+     */
+    static class Stats {
+        private static final int SUB_BUCKET_BITS = 6;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        /**
+         * Latencies of 2^40 microseconds (about 12 days) and more end up in the last bucket.
+         */
+        private static final int MAX_EXPONENT = 40;
+
+        private final long[] buckets = new long[(MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+        private long count;
+        private long maxMicros;
+        private long bytes;
+        private long errors;
+
+        void record(final long latencyNanos, final long transferred) {
+            final long micros = Math.min(Math.max(0, latencyNanos / 1000), (1L << MAX_EXPONENT) - 1);
+            buckets[bucketIndex(micros)]++;
+            count++;
+            maxMicros = Math.max(maxMicros, micros);
+            bytes += transferred;
+        }
+
+        void error() {
+            errors++;
+        }
+
+        void merge(final Stats other) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            count += other.count;
+            maxMicros = Math.max(maxMicros, other.maxMicros);
+            bytes += other.bytes;
+            errors += other.errors;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the latency in milliseconds below which the given percentage of the operations completed.
+         */
+        double percentileMillis(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), maxMicros) / 1000.0;
+                }
+            }
+            return maxMicros / 1000.0;
+        }
+
+        /**
+         * Values below {@link #SUB_BUCKETS} get a bucket each, larger values share a bucket with the values that have
+         * the same {@link #SUB_BUCKET_BITS} + 1 leading bits.
+         */
+        private static int bucketIndex(final long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+        }
+
+        private static long bucketUpperBound(final int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            final int shift = index / SUB_BUCKETS - 1;
+            return ((long) (index % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * The outcome of a load generator run.
+     */
+    static class Report {
+        private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+        private final Map<String, String> options;
+        private final Instant start;
+        private final Duration elapsed;
+        private final int threads;
+        private final int maxInFlight;
+        private final Map<Operation, Stats> stats;
+
+        Report(final Map<String, String> options, final Instant start, final Duration elapsed, final int threads,
+            final int maxInFlight, final Map<Operation, Stats> stats) {
+            this.options = options;
+            this.start = start;
+            this.elapsed = elapsed;
+            this.threads = threads;
+            this.maxInFlight = maxInFlight;
+            this.stats = stats;
+        }
+
+        Map<Operation, Stats> getStats() {
+            return stats;
+        }
+
+        void print(final PrintStream out) {
+            final double seconds = elapsed.toNanos() / 1e9;
+            if (maxInFlight > 0) {
+                out.printf(Locale.ROOT, "async, up to %d requests in flight, %.1f s%n", maxInFlight, seconds);
+            } else {
+                out.printf(Locale.ROOT, "%d threads, %.1f s%n", threads, seconds);
+            }
+            out.printf(Locale.ROOT, "%-8s %10s %8s %10s %10s %9s %9s %9s %9s%n", "op", "count", "errors", "ops/s",
+                "MiB/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+            stats.forEach((operation, s) -> out.printf(Locale.ROOT,
+                "%-8s %10d %8d %10.1f %10.2f %9.2f %9.2f %9.2f %9.2f%n", operation.name().toLowerCase(Locale.ROOT),
+                s.getCount(), s.getErrors(), s.getCount() / seconds, s.getBytes() / seconds / (1024 * 1024),
+                s.percentileMillis(50), s.percentileMillis(90), s.percentileMillis(99), s.percentileMillis(100)));
+        }
+
+        void writeJson(final Path path) throws IOException {
+            final double seconds = elapsed.toNanos() / 1e9;
+            try (final Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writer.write("{\n  \"start\": \"" + start + "\",\n");
+                writer.write(String.format(Locale.ROOT, "  \"durationSeconds\": %.3f,%n", seconds));
+                writer.write("  \"threads\": " + threads + ",\n  \"maxInFlight\": " + maxInFlight
+                    + ",\n  \"options\": {");
+                String separator = "\n";
+                for (final Map.Entry<String, String> option : options.entrySet()) {
+                    if (option.getKey().contains("key")) {
+                        // don't leak credentials into result files
+                        continue;
+                    }
+                    writer.write(separator + "    \"" + escape(option.getKey()) + "\": \"" + escape(option.getValue())
+                        + "\"");
+                    separator = ",\n";
+                }
+                writer.write("\n  },\n  \"operations\": {");
+                separator = "\n";
+                for (final Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+                    final Stats s = entry.getValue();
+                    writer.write(separator + "    \"" + entry.getKey().name().toLowerCase(Locale.ROOT) + "\": {");
+                    writer.write(String.format(Locale.ROOT,
+                        "\"count\": %d, \"errors\": %d, \"opsPerSecond\": %.3f, \"bytesPerSecond\": %.3f",
+                        s.getCount(), s.getErrors(), s.getCount() / seconds, s.getBytes() / seconds));
+                    for (final double percentile : PERCENTILES) {
+                        writer.write(String.format(Locale.ROOT, ", \"p%dMillis\": %.3f", (int) percentile,
+                            s.percentileMillis(percentile)));
+                    }
+                    writer.write("}");
+                    separator = ",\n";
+                }
+                writer.write("\n  }\n}\n");
+            }
+        }
+
+        private static String escape(final String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+    }
+}
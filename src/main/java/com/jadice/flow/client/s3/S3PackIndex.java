@@ -0,0 +1,181 @@
+package com.jadice.flow.client.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The index of a pack object. It is stored as a separate s3 object under the pack key and maps the stable entry ids
+ * (the position in the entry list) to byte ranges within the current data object of the pack. Each compaction writes
+ * a new data object under a fresh random data id, so an index never points into a data object that is rewritten and
+ * concurrent compactions never overwrite each other's data.
+ */
+class S3PackIndex {
+
+    private static final int MAGIC = 0x53335058; // "S3PX"
+
+    private static final byte VERSION = 1;
+
+    /**
+     * A single blob within the pack.
+     */
+    static class Entry {
+        final long offset;
+        final long length;
+        final String contentType;
+        boolean deleted;
+
+        Entry(final long offset, final long length, final String contentType, final boolean deleted) {
+            this.offset = offset;
+            this.length = length;
+            this.contentType = contentType;
+            this.deleted = deleted;
+        }
+    }
+
+    private final String dataId;
+
+    private final List<Entry> entries;
+
+    /**
+     * The ETag of the index object this index was read from, {@code null} for an index that was not read from s3.
+     */
+    private String eTag;
+
+    /**
+     * The {@link System#nanoTime()} at which this index was read from s3.
+     */
+    private long loadedAtNanos;
+
+    S3PackIndex() {
+        this(newDataId(), new ArrayList<>());
+    }
+
+    private S3PackIndex(final String dataId, final List<Entry> entries) {
+        this.dataId = dataId;
+        this.entries = entries;
+    }
+
+    private static String newDataId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    void setETag(final String eTag) {
+        this.eTag = eTag;
+    }
+
+    long getLoadedAtNanos() {
+        return loadedAtNanos;
+    }
+
+    void setLoadedAtNanos(final long loadedAtNanos) {
+        this.loadedAtNanos = loadedAtNanos;
+    }
+
+    List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    int add(final long offset, final long length, final String contentType) {
+        entries.add(new Entry(offset, length, contentType, false));
+        return entries.size() - 1;
+    }
+
+    Entry getEntry(final int id) {
+        if (id < 0 || id >= entries.size() || entries.get(id).deleted) {
+            throw new IllegalArgumentException("No such pack entry: " + id);
+        }
+        return entries.get(id);
+    }
+
+    void markDeleted(final int id) {
+        getEntry(id).deleted = true;
+    }
+
+    boolean isEmpty() {
+        return entries.stream().allMatch(e -> e.deleted);
+    }
+
+    long getTotalBytes() {
+        return entries.stream().mapToLong(e -> e.length).sum();
+    }
+
+    long getDeletedBytes() {
+        return entries.stream().filter(e -> e.deleted).mapToLong(e -> e.length).sum();
+    }
+
+    /**
+     * Creates the index of the compacted pack with a new data id. Deleted entries keep their id but no longer occupy
+     * any bytes.
+     */
+    S3PackIndex compacted() {
+        final List<Entry> compacted = new ArrayList<>(entries.size());
+        long offset = 0;
+        for (final Entry entry : entries) {
+            if (entry.deleted) {
+                compacted.add(new Entry(0, 0, entry.contentType, true));
+            } else {
+                compacted.add(new Entry(offset, entry.length, entry.contentType, false));
+                offset += entry.length;
+            }
+        }
+        return new S3PackIndex(newDataId(), compacted);
+    }
+
+    /**
+     * Derives the key of the data object from the key of the pack (index) object.
+     */
+    String dataKey(final String packKey) {
+        return packKey.substring(0, packKey.length() - S3PackStore.PACK_SUFFIX.length()) + "." + dataId + ".dat";
+    }
+
+    byte[] toBytes() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + entries.size() * 24);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(dataId);
+            out.writeInt(entries.size());
+            for (final Entry entry : entries) {
+                out.writeLong(entry.offset);
+                out.writeLong(entry.length);
+                out.writeBoolean(entry.deleted);
+                out.writeUTF(entry.contentType != null ? entry.contentType : "");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize pack index", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static S3PackIndex fromBytes(final byte[] bytes) {
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Not a pack index");
+            }
+            final String dataId = in.readUTF();
+            final int count = in.readInt();
+            final List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final long offset = in.readLong();
+                final long length = in.readLong();
+                final boolean deleted = in.readBoolean();
+                final String contentType = in.readUTF();
+                entries.add(new Entry(offset, length, contentType.isEmpty() ? null : contentType, deleted));
+            }
+            return new S3PackIndex(dataId, entries);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to parse pack index", e);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.jadice.flow.client.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Reads, writes and maintains pack objects. A pack consists of an index object (key ending in {@link #PACK_SUFFIX})
+ * and a data object holding the concatenated blobs. A blob is addressed by the URI of the index object with the entry
+ * id as fragment, e.g. {@code https://endpoint/bucket/subdir/packs/<uuid>.pack#42}.
+ * <p>
+ * Index updates (deletion, compaction) are read-modify-write cycles. They are serialized per pack within this store
+ * and written with {@code If-Match} on the ETag of the index they were based on, so that an update that raced with
+ * another client is retried on the fresh index instead of overwriting it.
+ * <p>
+ * Reads are served from a cached index for up to the configured TTL, so a blob read costs a single ranged GET. Data
+ * objects are never rewritten, so a cached index always points at valid bytes, unless a compaction removed its data
+ * object, in which case the index is reloaded. Deletions by other clients thus become visible after at most the TTL.
+ */
+class S3PackStore {
+
+    static final String PACK_DIR = "packs/";
+
+    static final String PACK_SUFFIX = ".pack";
+
+    private static final int INDEX_CACHE_SIZE = 1024;
+
+    /**
+     * How often a conflicting index update is retried before giving up.
+     */
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+
+    /**
+     * Logging.
+     */
+    private final Logger logger = LoggerFactory.getLogger(S3PackStore.class);
+
+    private final S3Transport transport;
+
+    /**
+     * Recently read indexes by pack key. An entry is only used until it is older than {@link #indexCacheTtl}.
+     */
+    private final Map<String, S3PackIndex> indexCache = Collections.synchronizedMap(
+        new LinkedHashMap<String, S3PackIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, S3PackIndex> eldest) {
+                return size() > INDEX_CACHE_SIZE;
+            }
+        });
+
+    /**
+     * Lock stripes that serialize the index updates of a pack within this store.
+     */
+    private final Object[] updateLocks = new Object[64];
+
+    /**
+     * How long a cached index is used before it is reloaded.
+     */
+    private final Duration indexCacheTtl;
+
+    S3PackStore(final S3Transport transport, final Duration indexCacheTtl) {
+        this.transport = transport;
+        this.indexCacheTtl = indexCacheTtl != null ? indexCacheTtl : Duration.ZERO;
+        for (int i = 0; i < updateLocks.length; i++) {
+            updateLocks[i] = new Object();
+        }
+    }
+
+    static boolean isPackUri(final URI uri, final String key) {
+        return uri.getFragment() != null && key.endsWith(PACK_SUFFIX);
+    }
+
+    static int getEntryId(final URI uri) {
+        try {
+            return Integer.parseInt(uri.getFragment());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid pack entry in URI: " + uri);
+        }
+    }
+
+    /**
+     * Uploads the data object first and the index afterwards, so that a visible index always refers to existing data.
+     */
+    void writePack(final String bucket, final String packKey, final S3PackIndex index, final byte[] data,
+        final int length) {
+        writeData(bucket, index.dataKey(packKey), data, length);
+        writeIndex(bucket, packKey, index);
+    }
+
+    S3Object getEntry(final String bucket, final String packKey, final int entryId) {
+        S3PackIndex index = getIndex(bucket, packKey);
+        try {
+            return readEntry(bucket, packKey, index, entryId);
+        } catch (RuntimeException e) {
+            // the cached index may refer to a data object that was replaced by a compaction in the meantime
+            logger.debug("Reading entry {} of pack {} failed, retrying with a fresh index", entryId, packKey, e);
+            index = loadIndex(bucket, packKey);
+            return readEntry(bucket, packKey, index, entryId);
+        }
+    }
+
+    ObjectMetadata getEntryMetadata(final String bucket, final String packKey, final int entryId) {
+        return toMetadata(getIndex(bucket, packKey).getEntry(entryId));
+    }
+
+    /**
+     * Marks the entry as deleted. The bytes are reclaimed by {@link #compact(String, String, double)}, unless this was
+     * the last live entry, in which case the whole pack is removed.
+     */
+    void deleteEntry(final String bucket, final String packKey, final int entryId) {
+        synchronized (getUpdateLock(packKey)) {
+            for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+                final S3PackIndex index = loadIndex(bucket, packKey);
+                index.markDeleted(entryId);
+                // the emptied index is written conditionally as well, so that a concurrent update is not dropped
+                if (writeIndexIfMatch(bucket, packKey, index, index.getETag())) {
+                    if (index.isEmpty()) {
+                        transport.deleteObject(bucket, packKey);
+                        transport.deleteObject(bucket, index.dataKey(packKey));
+                    }
+                    return;
+                }
+                logger.debug("Index of pack {} was modified concurrently, retrying deletion of entry {}", packKey,
+                    entryId);
+            }
+        }
+        throw new IllegalStateException("Could not delete entry " + entryId + " of pack " + packKey + " after "
+            + MAX_UPDATE_ATTEMPTS + " attempts due to concurrent modifications");
+    }
+
+    /**
+     * Rewrites the pack without its deleted entries if they make up at least the given share of the pack's bytes.
+     *
+     * @return {@code true} if the pack was compacted.
+     */
+    boolean compact(final String bucket, final String packKey, final double minDeletedRatio) {
+        synchronized (getUpdateLock(packKey)) {
+            for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+                final S3PackIndex index = loadIndex(bucket, packKey);
+                final long totalBytes = index.getTotalBytes();
+                if (totalBytes == 0 || index.getDeletedBytes() < minDeletedRatio * totalBytes) {
+                    return false;
+                }
+                final byte[] data = readFully(transport.getObject(bucket, index.dataKey(packKey)));
+                final S3PackIndex compacted = index.compacted();
+                final byte[] compactedData = new byte[(int) (totalBytes - index.getDeletedBytes())];
+                for (int i = 0; i < index.getEntries().size(); i++) {
+                    final S3PackIndex.Entry entry = index.getEntries().get(i);
+                    if (!entry.deleted) {
+                        System.arraycopy(data, (int) entry.offset, compactedData,
+                            (int) compacted.getEntries().get(i).offset, (int) entry.length);
+                    }
+                }
+                writeData(bucket, compacted.dataKey(packKey), compactedData, compactedData.length);
+                if (writeIndexIfMatch(bucket, packKey, compacted, index.getETag())) {
+                    transport.deleteObject(bucket, index.dataKey(packKey));
+                    logger.info("Compacted pack {} from {} to {} bytes", packKey, data.length, compactedData.length);
+                    return true;
+                }
+                // another client updated the index in the meantime, so our data object is not referenced
+                transport.deleteObject(bucket, compacted.dataKey(packKey));
+                logger.debug("Index of pack {} was modified concurrently, retrying compaction", packKey);
+            }
+        }
+        throw new IllegalStateException("Could not compact pack " + packKey + " after " + MAX_UPDATE_ATTEMPTS
+            + " attempts due to concurrent modifications");
+    }
+
+    /**
+     * Compacts all packs below the given prefix, see {@link #compact(String, String, double)}. A pack that fails to
+     * compact is logged and skipped.
+     *
+     * @return the number of compacted packs.
+     */
+    int compactAll(final String bucket, final String prefix, final double minDeletedRatio) {
+        int compacted = 0;
+        for (final String key : transport.listObjects(bucket, prefix)) {
+            if (!key.endsWith(PACK_SUFFIX)) {
+                continue;
+            }
+            try {
+                if (compact(bucket, key, minDeletedRatio)) {
+                    compacted++;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to compact pack {}", key, e);
+            }
+        }
+        return compacted;
+    }
+
+    private S3Object readEntry(final String bucket, final String packKey, final S3PackIndex index, final int entryId) {
+        final S3PackIndex.Entry entry = index.getEntry(entryId);
+        final S3Object s3Object;
+        if (entry.length == 0) {
+            // an empty range can't be requested
+            s3Object = new S3Object();
+            s3Object.setObjectContent(new ByteArrayInputStream(new byte[0]));
+        } else {
+            s3Object = transport.getObject(bucket, index.dataKey(packKey), entry.offset,
+                entry.offset + entry.length - 1);
+        }
+        s3Object.setBucketName(bucket);
+        s3Object.setKey(packKey);
+        s3Object.setObjectMetadata(toMetadata(entry));
+        return s3Object;
+    }
+
+    /**
+     * Returns the cached index if it is younger than the TTL, otherwise loads it.
+     */
+    private S3PackIndex getIndex(final String bucket, final String packKey) {
+        final S3PackIndex cached = indexCache.get(packKey);
+        if (cached != null && System.nanoTime() - cached.getLoadedAtNanos() < indexCacheTtl.toNanos()) {
+            return cached;
+        }
+        return loadIndex(bucket, packKey);
+    }
+
+    private S3PackIndex loadIndex(final String bucket, final String packKey) {
+        final S3Object s3Object = transport.getObject(bucket, packKey);
+        final S3PackIndex index = S3PackIndex.fromBytes(readFully(s3Object));
+        index.setETag(s3Object.getObjectMetadata().getETag());
+        index.setLoadedAtNanos(System.nanoTime());
+        indexCache.put(packKey, index);
+        return index;
+    }
+
+    private void writeData(final String bucket, final String dataKey, final byte[] data, final int length) {
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType("application/octet-stream");
+        transport.putObject(bucket, dataKey, new ByteArrayInputStream(data, 0, length), metadata);
+    }
+
+    private void writeIndex(final String bucket, final String packKey, final S3PackIndex index) {
+        final byte[] bytes = index.toBytes();
+        transport.putObject(bucket, packKey, new ByteArrayInputStream(bytes), createIndexMetadata(bytes.length));
+    }
+
+    /**
+     * Replaces the index object if it still has the given ETag. The written index is not cached, as its new ETag is
+     * unknown, so the next read loads it.
+     *
+     * @return {@code false} if the index object was modified in the meantime.
+     */
+    private boolean writeIndexIfMatch(final String bucket, final String packKey, final S3PackIndex index,
+        final String eTag) {
+        indexCache.remove(packKey);
+        final byte[] bytes = index.toBytes();
+        return transport.putObjectIfMatch(bucket, packKey, new ByteArrayInputStream(bytes),
+            createIndexMetadata(bytes.length), eTag);
+    }
+
+    private static ObjectMetadata createIndexMetadata(final int length) {
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType("application/octet-stream");
+        return metadata;
+    }
+
+    private Object getUpdateLock(final String packKey) {
+        return updateLocks[Math.floorMod(packKey.hashCode(), updateLocks.length)];
+    }
+
+    private static ObjectMetadata toMetadata(final S3PackIndex.Entry entry) {
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(entry.length);
+        if (entry.contentType != null) {
+            metadata.setContentType(entry.contentType);
+        }
+        return metadata;
+    }
+
+    private static byte[] readFully(final S3Object s3Object) {
+        try (final InputStream content = s3Object.getObjectContent()) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while reading s3 object: " + e.getMessage());
+        }
+    }
+}
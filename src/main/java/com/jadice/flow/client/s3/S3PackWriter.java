@@ -0,0 +1,95 @@
+package com.jadice.flow.client.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Appends many small blobs into larger pack objects, so that storing them costs one request per pack instead of one
+ * request per blob. Blobs are buffered in memory until the pack reaches its maximum size or {@link #flush()} is
+ * called. The returned URIs are stable and can be passed to {@link S3Client#getObject(URI)},
+ * {@link S3Client#getObjectMetadata(URI)} and {@link S3Client#deleteObject(URI)}, but only after the pack has been
+ * flushed.
+ * <p>
+ * Instances are obtained via {@link S3Client#createPackWriter(int)} and are thread-safe.
+ */
+public class S3PackWriter implements Closeable {
+
+    private final S3PackStore packStore;
+
+    private final ConfigProperties configurationProperties;
+
+    /**
+     * The size in bytes at which a pack is flushed.
+     */
+    private final int maxPackSize;
+
+    private String packKey;
+
+    private S3PackIndex index;
+
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+    S3PackWriter(final S3PackStore packStore, final ConfigProperties configurationProperties, final int maxPackSize) {
+        this.packStore = packStore;
+        this.configurationProperties = configurationProperties;
+        this.maxPackSize = maxPackSize;
+    }
+
+    /**
+     * Appends the content of the stream to the current pack.
+     *
+     * @param stream The inputStream whose content will be appended. It is read completely but not closed.
+     * @param mimeType The mimeType of the content.
+     * @return the stable uri of the blob within the pack.
+     * @throws IOException if reading the stream fails.
+     */
+    public URI append(final InputStream stream, final String mimeType) throws IOException {
+        return append(stream.readAllBytes(), mimeType);
+    }
+
+    /**
+     * Appends the content to the current pack.
+     *
+     * @param content The content that will be appended.
+     * @param mimeType The mimeType of the content.
+     * @return the stable uri of the blob within the pack.
+     */
+    public synchronized URI append(final byte[] content, final String mimeType) {
+        if (index != null && data.size() + content.length > maxPackSize) {
+            flush();
+        }
+        if (index == null) {
+            packKey = configurationProperties.getSubdir() + S3PackStore.PACK_DIR + UUID.randomUUID()
+                + S3PackStore.PACK_SUFFIX;
+            index = new S3PackIndex();
+        }
+        final int entryId = index.add(data.size(), content.length, mimeType);
+        data.write(content, 0, content.length);
+        return URI.create(S3Client.getUri(configurationProperties, packKey) + "#" + entryId);
+    }
+
+    /**
+     * Uploads the current pack, if it contains any blobs. Subsequent blobs go into a new pack.
+     */
+    public synchronized void flush() {
+        if (index == null) {
+            return;
+        }
+        packStore.writePack(configurationProperties.getBucket(), packKey, index, data.toByteArray(), data.size());
+        index = null;
+        packKey = null;
+        data.reset();
+    }
+
+    /**
+     * Flushes the current pack.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+}
@@ -0,0 +1,172 @@
+package com.jadice.flow.client.s3;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * The transport the {@link S3Client} uses to talk to the s3 storage. Implementations encapsulate the http stack, so
+ * that the backend can be chosen via {@link ConfigProperties#getTransport()} without changing the {@link S3Client} API.
+ * The AWS SDK v1 model classes are used as the common currency of all implementations.
+ * <p>
+ * The {@code *Async} variants return without waiting for the response if the implementation has non-blocking I/O. The
+ * default implementations delegate to the blocking methods and thus complete before they return.
+ */
+public interface S3Transport {
+
+    /**
+     * Uploads the stream to the given key.
+     *
+     * @param bucket The bucket to upload to.
+     * @param key The key of the new object.
+     * @param stream The content of the object.
+     * @param metadata The metadata of the object, the content length is optional.
+     */
+    void putObject(String bucket, String key, InputStream stream, ObjectMetadata metadata);
+
+    /**
+     * Uploads the stream to the given key, but only if the object currently stored under the key still has the given
+     * ETag (an {@code If-Match} conditional write).
+     *
+     * @param bucket The bucket to upload to.
+     * @param key The key of the object.
+     * @param stream The content of the object.
+     * @param metadata The metadata of the object, the content length is optional.
+     * @param eTag The ETag the current object must have.
+     * @return {@code false} if the precondition failed, i.e. the object was modified or deleted in the meantime.
+     */
+    boolean putObjectIfMatch(String bucket, String key, InputStream stream, ObjectMetadata metadata, String eTag);
+
+    /**
+     * Lists the keys of all objects whose key starts with the given prefix.
+     *
+     * @param bucket The bucket to list.
+     * @param prefix The key prefix.
+     * @return the matching keys.
+     */
+    List<String> listObjects(String bucket, String prefix);
+
+    /**
+     * Fetches an object. The caller is responsible for closing the object content.
+     *
+     * @param bucket The bucket of the object.
+     * @param key The key of the object.
+     * @return the object including its metadata and content.
+     */
+    S3Object getObject(String bucket, String key);
+
+    /**
+     * Fetches a byte range of an object. The caller is responsible for closing the object content.
+     *
+     * @param bucket The bucket of the object.
+     * @param key The key of the object.
+     * @param start The offset of the first byte to fetch.
+     * @param end The offset of the last byte to fetch (inclusive).
+     * @return the object including its metadata and the requested part of its content.
+     */
+    S3Object getObject(String bucket, String key, long start, long end);
+
+    /**
+     * Fetches the metadata of an object without its content.
+     *
+     * @param bucket The bucket of the object.
+     * @param key The key of the object.
+     * @return the metadata of the object.
+     */
+    ObjectMetadata getObjectMetadata(String bucket, String key);
+
+    /**
+     * Checks via a HEAD request whether an object exists.
+     *
+     * @param bucket The bucket of the object.
+     * @param key The key of the object.
+     * @return {@code true} if the object exists.
+     */
+    boolean doesObjectExist(String bucket, String key);
+
+    /**
+     * Deletes an object.
+     *
+     * @param bucket The bucket of the object.
+     * @param key The key of the object.
+     */
+    void deleteObject(String bucket, String key);
+
+    /**
+     * Issues a HEAD request for the bucket, which fails if the bucket does not exist or is not accessible.
+     *
+     * @param bucket The bucket to check.
+     */
+    void headBucket(String bucket);
+
+    /**
+     * Creates a pre-signed GET url for an object.
+     *
+     * @param bucket The bucket of the object.
+     * @param key The key of the object.
+     * @param expiration The point in time the url expires.
+     * @return the pre-signed url.
+     */
+    URL generatePresignedUrl(String bucket, String key, Date expiration);
+
+    /**
+     * Asynchronous variant of {@link #putObject(String, String, InputStream, ObjectMetadata)}.
+     */
+    default CompletableFuture<Void> putObjectAsync(String bucket, String key, InputStream stream,
+        ObjectMetadata metadata) {
+        return completed(() -> {
+            putObject(bucket, key, stream, metadata);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronous variant of {@link #getObject(String, String)}.
+     */
+    default CompletableFuture<S3Object> getObjectAsync(String bucket, String key) {
+        return completed(() -> getObject(bucket, key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getObjectMetadata(String, String)}.
+     */
+    default CompletableFuture<ObjectMetadata> getObjectMetadataAsync(String bucket, String key) {
+        return completed(() -> getObjectMetadata(bucket, key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #doesObjectExist(String, String)}.
+     */
+    default CompletableFuture<Boolean> doesObjectExistAsync(String bucket, String key) {
+        return completed(() -> doesObjectExist(bucket, key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #deleteObject(String, String)}.
+     */
+    default CompletableFuture<Void> deleteObjectAsync(String bucket, String key) {
+        return completed(() -> {
+            deleteObject(bucket, key);
+            return null;
+        });
+    }
+
+    /**
+     * Releases all resources like pooled connections and threads held by this transport.
+     */
+    void shutdown();
+
+    private static <T> CompletableFuture<T> completed(final Supplier<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
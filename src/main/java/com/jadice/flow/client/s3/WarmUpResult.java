@@ -0,0 +1,50 @@
+package com.jadice.flow.client.s3;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a {@link S3Client#warmUp()} run.
+ */
+public class WarmUpResult {
+
+    /**
+     * The addresses the endpoint host resolved to.
+     */
+    private final List<InetAddress> resolvedAddresses;
+
+    /**
+     * The number of warm-up requests that completed successfully and thus left a keep-alive connection in the pool.
+     */
+    private final int connections;
+
+    /**
+     * The total time spent warming up.
+     */
+    private final Duration duration;
+
+    public WarmUpResult(final List<InetAddress> resolvedAddresses, final int connections, final Duration duration) {
+        this.resolvedAddresses = List.copyOf(resolvedAddresses);
+        this.connections = connections;
+        this.duration = duration;
+    }
+
+    public List<InetAddress> getResolvedAddresses() {
+        return resolvedAddresses;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpResult{resolvedAddresses=" + resolvedAddresses + ", connections=" + connections + ", duration="
+            + duration + "}";
+    }
+}
@@ -0,0 +1,257 @@
+package com.jadice.flow.client.s3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the {@link NettyS3Transport} against a minimal path-style s3 stand-in served by the JDK http server.
+ */
+class NettyS3TransportTest {
+
+  private HttpServer server;
+
+  private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+  private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+  private volatile Headers lastPutHeaders;
+
+  private S3Client s3Client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+
+    final ConfigProperties configProperties = new ConfigProperties();
+    configProperties.setEndpoint(URI.create("http://localhost:" + server.getAddress().getPort()));
+    configProperties.setBucket("test-bucket");
+    configProperties.setRegion("us-east-1");
+    configProperties.setAccessKey("access-key");
+    configProperties.setSecretKey("secret-key");
+    configProperties.setTransport(S3ClientBuilder.TRANSPORT_NETTY);
+    s3Client = new S3Client(configProperties, Duration.ofMinutes(5));
+  }
+
+  @AfterEach
+  void tearDown() {
+    s3Client.shutdown();
+    server.stop(0);
+  }
+
+  @Test
+  void test_putWithUnknownLengthAndGet() throws IOException {
+    final byte[] content = "content of unknown length".getBytes(StandardCharsets.UTF_8);
+    final URI uri = s3Client.putObject(new ByteArrayInputStream(content), "text/plain", "test.txt");
+
+    // the stream is buffered, so the upload has a plain content length and no aws-chunked checksum trailer
+    assertEquals(String.valueOf(content.length), lastPutHeaders.getFirst("Content-Length"));
+    assertNull(lastPutHeaders.getFirst("x-amz-trailer"));
+    assertFalse(String.valueOf(lastPutHeaders.getFirst("Content-Encoding")).contains("aws-chunked"));
+
+    final S3Object s3Object = s3Client.getObject(uri);
+    try (final InputStream objectContent = s3Object.getObjectContent()) {
+      assertArrayEquals(content, objectContent.readAllBytes());
+    }
+    assertEquals("text/plain", s3Client.getObjectMetadata(uri).getContentType());
+
+    s3Client.deleteObject(uri);
+    assertThrows(IllegalStateException.class, () -> s3Client.getObject(uri));
+  }
+
+  @Test
+  void test_asyncOperations() throws Exception {
+    final byte[] content = "async content".getBytes(StandardCharsets.UTF_8);
+    final URI uri = s3Client.putObjectAsync(new ByteArrayInputStream(content), "text/plain", "test.txt",
+        (long) content.length).get(10, TimeUnit.SECONDS);
+
+    final S3Object s3Object = s3Client.getObjectAsync(uri).get(10, TimeUnit.SECONDS);
+    try (final InputStream objectContent = s3Object.getObjectContent()) {
+      assertArrayEquals(content, objectContent.readAllBytes());
+    }
+    assertEquals("text/plain", s3Client.getObjectMetadataAsync(uri).get(10, TimeUnit.SECONDS).getContentType());
+
+    s3Client.deleteObjectAsync(uri).get(10, TimeUnit.SECONDS);
+    final CompletableFuture<S3Object> missing = s3Client.getObjectAsync(uri);
+    assertThrows(Exception.class, () -> missing.get(10, TimeUnit.SECONDS));
+    assertTrue(missing.isCompletedExceptionally());
+  }
+
+  @Test
+  void test_transportRangeAndExistence() {
+    final S3Transport transport = new S3ClientBuilder().buildTransport(createNettyConfig());
+    try {
+      objects.put("test-bucket/key", "0123456789".getBytes(StandardCharsets.UTF_8));
+      assertTrue(transport.doesObjectExist("test-bucket", "key"));
+      assertFalse(transport.doesObjectExist("test-bucket", "missing"));
+      assertTrue(transport.doesObjectExistAsync("test-bucket", "key").join());
+      final S3Object range = transport.getObject("test-bucket", "key", 2, 5);
+      try (final InputStream content = range.getObjectContent()) {
+        assertArrayEquals("2345".getBytes(StandardCharsets.UTF_8), content.readAllBytes());
+      }
+      transport.headBucket("test-bucket");
+
+      objects.put("test-bucket/dir/a", new byte[0]);
+      objects.put("test-bucket/dir/b", new byte[0]);
+      assertEquals(Arrays.asList("dir/a", "dir/b"), transport.listObjects("test-bucket", "dir/"));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    } finally {
+      transport.shutdown();
+    }
+  }
+
+  @Test
+  void test_conditionalPut() {
+    final S3Transport transport = new S3ClientBuilder().buildTransport(createNettyConfig());
+    try {
+      objects.put("test-bucket/key", "old".getBytes(StandardCharsets.UTF_8));
+      final String eTag = transport.getObjectMetadata("test-bucket", "key").getETag();
+
+      final ObjectMetadata metadata = new ObjectMetadata();
+      assertTrue(transport.putObjectIfMatch("test-bucket", "key",
+          new ByteArrayInputStream("new".getBytes(StandardCharsets.UTF_8)), metadata, eTag));
+      assertEquals(eTag, lastPutHeaders.getFirst("If-Match"));
+      // the object changed, so the same precondition fails now
+      assertFalse(transport.putObjectIfMatch("test-bucket", "key",
+          new ByteArrayInputStream("newer".getBytes(StandardCharsets.UTF_8)), metadata, eTag));
+      assertArrayEquals("new".getBytes(StandardCharsets.UTF_8), objects.get("test-bucket/key"));
+      assertFalse(transport.putObjectIfMatch("test-bucket", "missing",
+          new ByteArrayInputStream(new byte[0]), metadata, eTag));
+    } finally {
+      transport.shutdown();
+    }
+  }
+
+  private ConfigProperties createNettyConfig() {
+    final ConfigProperties configProperties = new ConfigProperties();
+    configProperties.setEndpoint(URI.create("http://localhost:" + server.getAddress().getPort()));
+    configProperties.setRegion("us-east-1");
+    configProperties.setAccessKey("access-key");
+    configProperties.setSecretKey("secret-key");
+    configProperties.setTransport(S3ClientBuilder.TRANSPORT_NETTY);
+    return configProperties;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    final String key = exchange.getRequestURI().getPath().substring(1);
+    final String method = exchange.getRequestMethod();
+    try {
+      if ("PUT".equals(method)) {
+        final byte[] content = exchange.getRequestBody().readAllBytes();
+        lastPutHeaders = exchange.getRequestHeaders();
+        final String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && (!objects.containsKey(key) || !ifMatch.equals(eTag(objects.get(key))))) {
+          exchange.sendResponseHeaders(objects.containsKey(key) ? 412 : 404, -1);
+          return;
+        }
+        objects.put(key, content);
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) {
+          contentTypes.put(key, contentType);
+        }
+        exchange.getResponseHeaders().add("ETag", eTag(content));
+        exchange.sendResponseHeaders(200, -1);
+      } else if ("DELETE".equals(method)) {
+        objects.remove(key);
+        exchange.sendResponseHeaders(204, -1);
+      } else if (!key.contains("/") && "GET".equals(method)) {
+        listObjects(exchange, key);
+      } else if (!key.contains("/")) {
+        // HEAD bucket
+        exchange.sendResponseHeaders(200, -1);
+      } else if (!objects.containsKey(key)) {
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        final byte[] error = "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message></Error>"
+            .getBytes(StandardCharsets.UTF_8);
+        if ("HEAD".equals(method)) {
+          exchange.sendResponseHeaders(404, -1);
+        } else {
+          exchange.sendResponseHeaders(404, error.length);
+          exchange.getResponseBody().write(error);
+        }
+      } else {
+        byte[] content = objects.get(key);
+        exchange.getResponseHeaders().add("Content-Type", contentTypes.getOrDefault(key, "application/octet-stream"));
+        exchange.getResponseHeaders().add("ETag", eTag(content));
+        int status = 200;
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+          final String[] bounds = range.substring("bytes=".length()).split("-");
+          final int start = Integer.parseInt(bounds[0]);
+          final int end = Integer.parseInt(bounds[1]);
+          exchange.getResponseHeaders().add("Content-Range",
+              "bytes " + start + "-" + end + "/" + content.length);
+          content = Arrays.copyOfRange(content, start, end + 1);
+          status = 206;
+        }
+        if ("HEAD".equals(method)) {
+          exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+          exchange.sendResponseHeaders(status, -1);
+        } else {
+          exchange.sendResponseHeaders(status, content.length);
+          try (final OutputStream body = exchange.getResponseBody()) {
+            body.write(content);
+          }
+        }
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void listObjects(HttpExchange exchange, String bucket) throws IOException {
+    final String query = exchange.getRequestURI().getQuery();
+    final String prefix = query.replaceAll(".*prefix=([^&]*).*", "$1");
+    final StringBuilder xml = new StringBuilder("<ListBucketResult><Name>").append(bucket)
+        .append("</Name><IsTruncated>false</IsTruncated>");
+    objects.keySet().stream().sorted().filter(path -> path.startsWith(bucket + "/" + prefix))
+        .forEach(path -> xml.append("<Contents><Key>").append(path.substring(bucket.length() + 1))
+            .append("</Key></Contents>"));
+    final byte[] body = xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/xml");
+    exchange.sendResponseHeaders(200, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private static String eTag(byte[] content) {
+    try {
+      final byte[] md5 = MessageDigest.getInstance("MD5").digest(content);
+      return "\"" + String.format("%032x", new BigInteger(1, md5)) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.jadice.flow.client.s3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+class S3ClientDeduplicationTest {
+
+  private PutCountingTransport transport;
+
+  private S3Client s3Client;
+
+  @BeforeEach
+  void setup() {
+    final ConfigProperties configProperties = new ConfigProperties();
+    configProperties.setEndpoint(URI.create("https://test.endpoint.sample.com"));
+    configProperties.setBucket("test-bucket");
+    configProperties.setSubdir("subdir");
+    configProperties.setDeduplicationEnabled(true);
+    transport = new PutCountingTransport();
+    s3Client = new S3Client(configProperties, transport, Duration.ofMinutes(5));
+  }
+
+  @Test
+  void test_identicalContentIsUploadedOnce() {
+    final URI first = s3Client.putObject(stream("same content"), "text/plain", "first.txt");
+    final URI second = s3Client.putObject(stream("same content"), "text/plain", "second.txt");
+    assertEquals(first, second);
+    assertEquals(1, transport.puts.get());
+
+    final URI other = s3Client.putObject(stream("other content"), "text/plain", "first.txt");
+    assertNotEquals(first, other);
+    assertEquals(2, transport.puts.get());
+  }
+
+  @Test
+  void test_contentIdentifier() {
+    final URI uri = s3Client.putObject(stream("content"), "text/plain", "document.pdf");
+    assertTrue(uri.toString().matches("https://test\\.endpoint\\.sample\\.com/test-bucket/subdir/[0-9a-f]{64}"));
+
+    // the key depends on the content alone
+    assertEquals(uri, s3Client.putObject(stream("content"), "text/plain", "document"));
+  }
+
+  @Test
+  void test_firstUploadDeterminesContentType() {
+    final URI first = s3Client.putObject(stream("content"), "text/plain", "document.txt");
+    final URI second = s3Client.putObject(stream("content"), "application/pdf", "document.pdf");
+    assertEquals(first, second);
+    assertEquals("text/plain", s3Client.getObjectMetadata(second).getContentType());
+  }
+
+  @Test
+  void test_streamsThatCannotBeHashedInPlace() throws IOException {
+    final byte[] large = new byte[S3Client.IN_PLACE_HASH_LIMIT + 1];
+    Arrays.fill(large, (byte) 'x');
+    final URI spooled = s3Client.putObject(new ByteArrayInputStream(large), null, "large.dat");
+    final URI unmarkable = s3Client.putObject(new BufferedInputStream(new ByteArrayInputStream(large)) {
+      @Override
+      public boolean markSupported() {
+        return false;
+      }
+    }, null, "large.dat");
+    assertEquals(spooled, unmarkable);
+    assertEquals(large.length, s3Client.getObjectMetadata(spooled).getContentLength());
+    try (final InputStream content = s3Client.getObject(spooled).getObjectContent()) {
+      assertArrayEquals(large, content.readAllBytes());
+    }
+  }
+
+  @Test
+  void test_fileIsHashedFromItsCurrentPosition(@TempDir Path tempDir) throws IOException {
+    final Path file = tempDir.resolve("document.txt");
+    Files.write(file, "skipped content".getBytes(StandardCharsets.UTF_8));
+    final URI uri;
+    try (final FileInputStream stream = new FileInputStream(file.toFile())) {
+      stream.skip("skipped ".length());
+      uri = s3Client.putObject(stream, "text/plain", "document.txt");
+    }
+    assertEquals(uri, s3Client.putObject(stream("content"), "text/plain", "document.txt"));
+    try (final InputStream content = s3Client.getObject(uri).getObjectContent()) {
+      assertArrayEquals("content".getBytes(StandardCharsets.UTF_8), content.readAllBytes());
+    }
+  }
+
+  @Test
+  void test_presignedUriOfExistingContent() {
+    s3Client.putObject(stream("content"), "text/plain", "document.txt");
+    final URI presigned = s3Client.putObjectAndCreatePsUri(stream("content"), "text/plain", "document.txt");
+    assertTrue(presigned.getPath().matches("/test-bucket/subdir/[0-9a-f]{64}"));
+    assertEquals(1, transport.puts.get());
+  }
+
+  private static ByteArrayInputStream stream(String s) {
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static class PutCountingTransport extends InMemoryS3Transport {
+    private final AtomicInteger puts = new AtomicInteger();
+
+    @Override
+    public void putObject(String bucket, String key, InputStream stream, ObjectMetadata objectMetadata) {
+      puts.incrementAndGet();
+      super.putObject(bucket, key, stream, objectMetadata);
+    }
+  }
+}
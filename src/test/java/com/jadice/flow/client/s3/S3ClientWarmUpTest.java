@@ -0,0 +1,110 @@
+package com.jadice.flow.client.s3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+
+class S3ClientWarmUpTest {
+
+  @Test
+  void test_blockingWarmUp() {
+    final HeadCountingTransport transport = new HeadCountingTransport(false);
+    final S3Client s3Client = new S3Client(createConfigProperties(4, false), transport, Duration.ofMinutes(5));
+
+    final CompletableFuture<WarmUpResult> warmUp = s3Client.getWarmUp();
+    assertTrue(warmUp.isDone());
+    final WarmUpResult result = warmUp.join();
+    assertEquals(4, transport.heads.get());
+    assertEquals(4, result.getConnections());
+    assertFalse(result.getResolvedAddresses().isEmpty());
+    assertNotNull(result.getDuration());
+    assertFalse(result.getDuration().isNegative());
+  }
+
+  @Test
+  void test_asyncWarmUp() throws Exception {
+    final HeadCountingTransport transport = new HeadCountingTransport(false);
+    final CountDownLatch release = new CountDownLatch(1);
+    transport.gate = release;
+    final S3Client s3Client = new S3Client(createConfigProperties(3, true), transport, Duration.ofMinutes(5));
+
+    // the constructor returns while the HEAD requests are still blocked
+    final CompletableFuture<WarmUpResult> warmUp = s3Client.getWarmUp();
+    assertFalse(warmUp.isDone());
+    release.countDown();
+    assertEquals(3, warmUp.get(10, TimeUnit.SECONDS).getConnections());
+    assertEquals(3, transport.heads.get());
+  }
+
+  @Test
+  void test_warmUpFailsIfAllHeadsFail() {
+    final HeadCountingTransport transport = new HeadCountingTransport(true);
+    final ConfigProperties configProperties = createConfigProperties(2, false);
+    assertThrows(IllegalStateException.class, () -> new S3Client(configProperties, transport, Duration.ofMinutes(5)));
+    // the caller has no client to shut down, so the constructor releases the transport itself
+    assertEquals(1, transport.shutdowns.get());
+
+    configProperties.setWarmUpConnections(0);
+    final S3Client s3Client = new S3Client(configProperties, transport, Duration.ofMinutes(5));
+    assertThrows(IllegalStateException.class, s3Client::warmUp);
+    assertEquals(1, transport.shutdowns.get());
+    final ExecutionException e = assertThrows(ExecutionException.class, () -> s3Client.warmUpAsync().get());
+    assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+
+  private static ConfigProperties createConfigProperties(int warmUpConnections, boolean warmUpAsync) {
+    final ConfigProperties configProperties = new ConfigProperties();
+    configProperties.setEndpoint(URI.create("http://localhost"));
+    configProperties.setBucket("test-bucket");
+    configProperties.setWarmUpConnections(warmUpConnections);
+    configProperties.setWarmUpAsync(warmUpAsync);
+    return configProperties;
+  }
+
+  private static class HeadCountingTransport extends InMemoryS3Transport {
+    private final AtomicInteger heads = new AtomicInteger();
+    private final AtomicInteger shutdowns = new AtomicInteger();
+    private final boolean fail;
+    private volatile CountDownLatch gate;
+
+    HeadCountingTransport(boolean fail) {
+      this.fail = fail;
+    }
+
+    @Override
+    public void headBucket(String bucket) {
+      if (gate != null) {
+        try {
+          gate.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      heads.incrementAndGet();
+      if (fail) {
+        final AmazonS3Exception e = new AmazonS3Exception("Access Denied");
+        e.setStatusCode(403);
+        throw e;
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      shutdowns.incrementAndGet();
+    }
+  }
+}
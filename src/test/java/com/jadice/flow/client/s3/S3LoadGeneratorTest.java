@@ -0,0 +1,142 @@
+package com.jadice.flow.client.s3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.jadice.flow.client.s3.S3LoadGenerator.Operation;
+
+class S3LoadGeneratorTest {
+
+  @Test
+  void test_parseArguments() {
+    final Map<String, String> options = S3LoadGenerator.parseArgs(new String[]{"--endpoint=local", "--mix=put:3,get:1"});
+    assertEquals("local", options.get("endpoint"));
+    assertEquals(Map.of(Operation.PUT, 3, Operation.GET, 1), S3LoadGenerator.parseMix(options.get("mix")));
+    assertArrayEquals(new int[]{512, 2048, 3 * 1024 * 1024}, S3LoadGenerator.parseSizes("512, 2k,3M"));
+    assertThrows(IllegalArgumentException.class, () -> S3LoadGenerator.parseArgs(new String[]{"endpoint"}));
+    assertThrows(IllegalArgumentException.class, () -> S3LoadGenerator.parseMix("put:0"));
+  }
+
+  @Test
+  void test_percentiles() {
+    final S3LoadGenerator.Stats stats = new S3LoadGenerator.Stats();
+    final S3LoadGenerator.Stats other = new S3LoadGenerator.Stats();
+    for (int i = 1; i <= 100; i++) {
+      (i % 2 == 0 ? stats : other).record(i * 1_000_000L, 1);
+    }
+    stats.merge(other);
+    assertEquals(100, stats.getCount());
+    assertEquals(100, stats.getBytes());
+    // the histogram buckets are accurate to within 1/64 of the value
+    assertEquals(50, stats.percentileMillis(50), 50 / 64.0);
+    assertEquals(99, stats.percentileMillis(99), 99 / 64.0);
+    assertEquals(100, stats.percentileMillis(100));
+  }
+
+  @Test
+  void test_percentilesOfSmallAndHugeLatencies() {
+    final S3LoadGenerator.Stats stats = new S3LoadGenerator.Stats();
+    stats.record(5_000L, 0);
+    stats.record(Long.MAX_VALUE, 0);
+    assertEquals(0.005, stats.percentileMillis(50));
+    assertTrue(stats.percentileMillis(100) > 1e9);
+    assertEquals(0, new S3LoadGenerator.Stats().percentileMillis(99));
+  }
+
+  @Test
+  void test_invalidOptions() {
+    assertThrows(IllegalArgumentException.class, () -> new S3LoadGenerator(S3LoadGenerator.parseArgs(
+        new String[]{"--endpoint=local", "--bucket=test-bucket", "--threads=0"})));
+    assertThrows(IllegalArgumentException.class, () -> new S3LoadGenerator(S3LoadGenerator.parseArgs(
+        new String[]{"--endpoint=local", "--bucket=test-bucket", "--duration=0"})));
+    assertThrows(IllegalArgumentException.class, () -> new S3LoadGenerator(S3LoadGenerator.parseArgs(
+        new String[]{"--endpoint=local", "--bucket=test-bucket", "--preload=-1"})));
+    assertThrows(IllegalArgumentException.class, () -> new S3LoadGenerator(S3LoadGenerator.parseArgs(
+        new String[]{"--endpoint=local", "--bucket=test-bucket", "--async=-1"})));
+    assertThrows(IllegalArgumentException.class, () -> new S3LoadGenerator(S3LoadGenerator.parseArgs(
+        new String[]{"--endpoint=local", "--bucket=test-bucket", "--max-objects=10", "--preload=20"})));
+    assertThrows(IllegalArgumentException.class, () -> S3LoadGenerator.parseSizes("-1k"));
+  }
+
+  @Test
+  void test_localRun(@TempDir Path tempDir) throws Exception {
+    final S3LoadGenerator generator = new S3LoadGenerator(S3LoadGenerator.parseArgs(new String[]{
+        "--endpoint=local", "--bucket=test-bucket", "--sizes=1k", "--threads=4", "--duration=1", "--preload=10",
+        "--mix=put:10,get:30,head:20,delete:30,presign:10"}));
+    final S3LoadGenerator.Report report = generator.run();
+    assertTrue(report.getStats().get(Operation.PUT).getCount() > 0);
+    assertTrue(report.getStats().get(Operation.GET).getBytes() > 0);
+    // objects in use are not in the pool, so deletes never race with reads of the same object
+    report.getStats().forEach((operation, stats) -> assertEquals(0, stats.getErrors(), operation.name()));
+
+    final Path output = tempDir.resolve("results.json");
+    report.writeJson(output);
+    final String json = Files.readString(output);
+    assertTrue(json.contains("\"put\": {\"count\": "));
+    assertTrue(json.contains("\"p99Millis\""));
+  }
+
+  @Test
+  void test_asyncRun() throws Exception {
+    final InMemoryS3Transport transport = new InMemoryS3Transport();
+    final S3LoadGenerator generator = new S3LoadGenerator(S3LoadGenerator.parseArgs(new String[]{
+        "--endpoint=local", "--bucket=test-bucket", "--sizes=1k", "--threads=2", "--async=16", "--duration=1",
+        "--mix=put:10,get:30,head:20,delete:30,presign:10"}), transport);
+    final S3LoadGenerator.Report report = generator.run();
+    assertTrue(report.getStats().get(Operation.PUT).getCount() > 0);
+    assertTrue(report.getStats().get(Operation.GET).getBytes() > 0);
+    report.getStats().forEach((operation, stats) -> assertEquals(0, stats.getErrors(), operation.name()));
+    assertEquals(0, transport.size());
+  }
+
+  @Test
+  void test_poolIsBounded() throws Exception {
+    final SizeTrackingTransport transport = new SizeTrackingTransport();
+    final S3LoadGenerator generator = new S3LoadGenerator(S3LoadGenerator.parseArgs(new String[]{
+        "--endpoint=local", "--bucket=test-bucket", "--sizes=1k", "--threads=4", "--duration=1", "--mix=put:1",
+        "--preload=5", "--max-objects=20"}), transport);
+    final S3LoadGenerator.Report report = generator.run();
+    assertTrue(report.getStats().get(Operation.PUT).getCount() > 20);
+    // a put into the full pool replaces an object, which is deleted once the new one is stored
+    assertTrue(transport.maxSize.get() <= 20 + 4, "max size " + transport.maxSize.get());
+    assertEquals(0, transport.size());
+  }
+
+  @Test
+  void test_cleanupAfterFailedRun() {
+    final SizeTrackingTransport transport = new SizeTrackingTransport() {
+      @Override
+      public S3Object getObject(String bucket, String key) {
+        throw new AssertionError("worker failure");
+      }
+    };
+    final S3LoadGenerator generator = new S3LoadGenerator(S3LoadGenerator.parseArgs(new String[]{
+        "--endpoint=local", "--bucket=test-bucket", "--sizes=1k", "--threads=2", "--duration=1", "--mix=get:1",
+        "--preload=10"}), transport);
+    assertThrows(IllegalStateException.class, generator::run);
+    assertEquals(0, transport.size());
+  }
+
+  private static class SizeTrackingTransport extends InMemoryS3Transport {
+    private final AtomicInteger maxSize = new AtomicInteger();
+
+    @Override
+    public void putObject(String bucket, String key, InputStream stream, ObjectMetadata objectMetadata) {
+      super.putObject(bucket, key, stream, objectMetadata);
+      maxSize.accumulateAndGet(size(), Math::max);
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package com.jadice.flow.client.s3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+class S3PackWriterTest {
+
+  private RequestCountingTransport transport;
+
+  private S3Client s3Client;
+
+  @BeforeEach
+  void setup() {
+    transport = new RequestCountingTransport();
+    s3Client = new S3Client(createConfigProperties(), transport, Duration.ofMinutes(5));
+  }
+
+  @Test
+  void test_appendAndRead() throws IOException {
+    final URI first;
+    final URI second;
+    try (final S3PackWriter writer = s3Client.createPackWriter(1024)) {
+      first = writer.append(bytes("first"), "text/plain");
+      second = writer.append(bytes("second blob"), "application/json");
+    }
+    assertTrue(first.toString().startsWith("https://test.endpoint.sample.com/test-bucket/subdir/packs/"));
+    assertTrue(first.toString().endsWith(".pack#0"));
+    assertTrue(second.toString().endsWith(".pack#1"));
+    // one data object and one index
+    assertEquals(2, transport.size());
+
+    assertArrayEquals(bytes("first"), read(first));
+    assertArrayEquals(bytes("second blob"), read(second));
+    assertEquals("application/json", s3Client.getObjectMetadata(second).getContentType());
+    assertEquals(11, s3Client.getObjectMetadata(second).getContentLength());
+  }
+
+  @Test
+  void test_flushWhenPackIsFull() {
+    try (final S3PackWriter writer = s3Client.createPackWriter(8)) {
+      final URI first = writer.append(bytes("12345"), null);
+      final URI second = writer.append(bytes("67890"), null);
+      assertTrue(second.toString().endsWith("#0"));
+      assertFalse(first.getPath().equals(second.getPath()));
+    }
+    assertEquals(4, transport.size());
+  }
+
+  @Test
+  void test_deleteAndCompact() throws IOException {
+    final URI first;
+    final URI second;
+    final URI third;
+    try (final S3PackWriter writer = s3Client.createPackWriter(1024)) {
+      first = writer.append(bytes("aaaa"), null);
+      second = writer.append(bytes("bbbb"), null);
+      third = writer.append(bytes("cccc"), null);
+    }
+    s3Client.deleteObject(second);
+    assertThrows(IllegalStateException.class, () -> s3Client.getObject(second));
+
+    assertFalse(s3Client.compactPack(first, 0.5));
+    assertTrue(s3Client.compactPack(first, 0.3));
+    assertArrayEquals(bytes("aaaa"), read(first));
+    assertArrayEquals(bytes("cccc"), read(third));
+    assertEquals(2, transport.size());
+
+    // removing the last entries removes the whole pack
+    s3Client.deleteObject(first);
+    s3Client.deleteObject(third);
+    assertEquals(0, transport.size());
+  }
+
+  @Test
+  void test_concurrentDeletesAndCompaction() throws Exception {
+    // a second client on the same storage has its own index cache and locks, like another node would
+    final S3Client otherClient = new S3Client(createConfigProperties(), transport, Duration.ofMinutes(5));
+    final List<URI> uris = new ArrayList<>();
+    try (final S3PackWriter writer = s3Client.createPackWriter(4096)) {
+      for (int i = 0; i < 40; i++) {
+        uris.add(writer.append(bytes("blob-" + i), null));
+      }
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 40; i += 2) {
+        final URI uri = uris.get(i);
+        final S3Client client = i % 4 == 0 ? s3Client : otherClient;
+        futures.add(executor.submit(() -> client.deleteObject(uri)));
+      }
+      for (int i = 0; i < 5; i++) {
+        futures.add(executor.submit(() -> otherClient.compactPack(uris.get(1), 0.1)));
+      }
+      for (final Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // no deletion was lost and no compaction resurrected a deleted entry, checked by a client without cached indexes
+    final S3Client verifier = new S3Client(createConfigProperties(), transport, Duration.ofMinutes(5));
+    for (int i = 0; i < 40; i++) {
+      final URI uri = uris.get(i);
+      if (i % 2 == 0) {
+        assertThrows(IllegalStateException.class, () -> verifier.getObject(uri));
+      } else {
+        assertArrayEquals(bytes("blob-" + i), read(verifier, uri));
+      }
+    }
+    // the orphaned data objects of compactions that lost a race are removed again
+    assertEquals(2, transport.size());
+  }
+
+  @Test
+  void test_readsAreServedFromCachedIndex() throws IOException {
+    final URI first;
+    final URI second;
+    try (final S3PackWriter writer = s3Client.createPackWriter(1024)) {
+      first = writer.append(bytes("first"), "text/plain");
+      second = writer.append(bytes("second"), "text/plain");
+    }
+    final S3Client otherClient = new S3Client(createConfigProperties(), transport, Duration.ofMinutes(5));
+    assertArrayEquals(bytes("first"), read(otherClient, first));
+
+    // with a cached index a read is a single ranged GET and a metadata lookup needs no request at all
+    final int requests = transport.requests.get();
+    assertArrayEquals(bytes("second"), read(otherClient, second));
+    assertEquals("text/plain", otherClient.getObjectMetadata(second).getContentType());
+    assertEquals(requests + 1, transport.requests.get());
+
+    // a deletion by another client is only seen once the cached index expires
+    s3Client.deleteObject(first);
+    assertArrayEquals(bytes("first"), read(otherClient, first));
+    assertThrows(IllegalStateException.class, () -> s3Client.getObject(first));
+  }
+
+  @Test
+  void test_deletionSeenByOtherClientWithoutCaching() throws IOException {
+    final ConfigProperties configProperties = createConfigProperties();
+    configProperties.setPackIndexCacheTtl(Duration.ZERO);
+    final S3Client otherClient = new S3Client(configProperties, transport, Duration.ofMinutes(5));
+    final URI first;
+    final URI second;
+    try (final S3PackWriter writer = s3Client.createPackWriter(1024)) {
+      first = writer.append(bytes("first"), "text/plain");
+      second = writer.append(bytes("second"), "text/plain");
+    }
+    assertEquals("text/plain", otherClient.getObjectMetadata(first).getContentType());
+    assertArrayEquals(bytes("first"), read(otherClient, first));
+
+    s3Client.deleteObject(first);
+    assertThrows(IllegalStateException.class, () -> otherClient.getObjectMetadata(first));
+    assertThrows(IllegalStateException.class, () -> otherClient.getObject(first));
+    assertArrayEquals(bytes("second"), read(otherClient, second));
+  }
+
+  @Test
+  void test_cachedIndexAfterCompactionByOtherClient() throws IOException {
+    final URI first;
+    final URI second;
+    try (final S3PackWriter writer = s3Client.createPackWriter(1024)) {
+      first = writer.append(bytes("first"), null);
+      second = writer.append(bytes("second"), null);
+    }
+    final S3Client otherClient = new S3Client(createConfigProperties(), transport, Duration.ofMinutes(5));
+    assertArrayEquals(bytes("second"), read(otherClient, second));
+
+    // the data object the cached index points to is gone, so the index is reloaded
+    s3Client.deleteObject(first);
+    assertTrue(s3Client.compactPack(first, 0.1));
+    assertArrayEquals(bytes("second"), read(otherClient, second));
+    assertThrows(IllegalStateException.class, () -> otherClient.getObject(first));
+  }
+
+  @Test
+  void test_compactPacks() throws IOException {
+    final URI first;
+    final URI second;
+    final URI third;
+    try (final S3PackWriter writer = s3Client.createPackWriter(8)) {
+      first = writer.append(bytes("1234"), null);
+      second = writer.append(bytes("5678"), null);
+      third = writer.append(bytes("abcd"), null);
+      writer.append(bytes("efgh"), null);
+    }
+    // only the first of the two packs has enough deleted bytes
+    s3Client.deleteObject(first);
+    assertEquals(4, transport.size());
+    assertEquals(1, s3Client.compactPacks(0.5));
+    assertEquals(0, s3Client.compactPacks(0.5));
+    assertEquals(4, transport.size());
+    assertArrayEquals(bytes("5678"), read(second));
+    assertArrayEquals(bytes("abcd"), read(third));
+  }
+
+  private byte[] read(URI uri) throws IOException {
+    return read(s3Client, uri);
+  }
+
+  private static byte[] read(S3Client client, URI uri) throws IOException {
+    final S3Object s3Object = client.getObject(uri);
+    try (final InputStream content = s3Object.getObjectContent()) {
+      return content.readAllBytes();
+    }
+  }
+
+  private static ConfigProperties createConfigProperties() {
+    final ConfigProperties configProperties = new ConfigProperties();
+    configProperties.setEndpoint(URI.create("https://test.endpoint.sample.com"));
+    configProperties.setBucket("test-bucket");
+    configProperties.setSubdir("subdir");
+    return configProperties;
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static class RequestCountingTransport extends InMemoryS3Transport {
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Override
+    public S3Object getObject(String bucket, String key) {
+      requests.incrementAndGet();
+      return super.getObject(bucket, key);
+    }
+
+    @Override
+    public S3Object getObject(String bucket, String key, long start, long end) {
+      requests.incrementAndGet();
+      return super.getObject(bucket, key, start, end);
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucket, String key) {
+      requests.incrementAndGet();
+      return super.getObjectMetadata(bucket, key);
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package com.jadice.flow.client.s3;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.URI;
@@ -64,6 +66,44 @@ class S3UtilsTest {
     assertTrue(identifier.matches("subdir/[a-z0-9-]+_my-file\\.pdf"));
   }
 
+  @Test
+  void test_noWarmUpByDefault() {
+    final ConfigProperties configProperties = createConfigPropertiesWithEndpoint("test.endpoint.sample.com", "subdir");
+    final S3Client s3Client = new S3Client(configProperties, 5L);
+    assertNull(s3Client.getWarmUp());
+  }
+
+  @Test
+  void test_buildTransport() {
+    final ConfigProperties configProperties = createConfigPropertiesWithEndpoint("test.endpoint.sample.com");
+    configProperties.setAccessKey("access-key");
+    configProperties.setSecretKey("secret-key");
+    final S3ClientBuilder builder = new S3ClientBuilder();
+
+    final S3Transport apache = builder.buildTransport(configProperties);
+    assertInstanceOf(ApacheS3Transport.class, apache);
+    apache.shutdown();
+
+    configProperties.setTransport(S3ClientBuilder.TRANSPORT_NETTY);
+    final S3Transport netty = builder.buildTransport(configProperties);
+    assertInstanceOf(NettyS3Transport.class, netty);
+    netty.shutdown();
+
+    configProperties.setTransport("carrier-pigeon");
+    assertThrows(IllegalArgumentException.class, () -> builder.buildTransport(configProperties));
+  }
+
+  @Test
+  void test_maxConnections() {
+    final ConfigProperties configProperties = createConfigPropertiesWithEndpoint("test.endpoint.sample.com");
+    assertEquals(S3ClientBuilder.DEFAULT_MAX_CONNECTIONS, S3ClientBuilder.determineMaxConnections(configProperties));
+    configProperties.setMaxConnections(500);
+    assertEquals(500, S3ClientBuilder.determineMaxConnections(configProperties));
+    // the pool must be able to hold the warm-up connections
+    configProperties.setWarmUpConnections(800);
+    assertEquals(800, S3ClientBuilder.determineMaxConnections(configProperties));
+  }
+
   @ParameterizedTest
   @ValueSource(strings = {
       "https://test.endpoint.sample.com/test-bucket/test-identifier",